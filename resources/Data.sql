@@ -18,6 +18,30 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create table vehicle_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_VISIT int NOT NULL);
+
+create table ticket_journal(
+ JOURNAL_NAME varchar(100) PRIMARY KEY,
+ LAST_SEQUENCE bigint NOT NULL);
+
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME))
+partition by range columns(OUT_TIME) (
+ partition p_future values less than (MAXVALUE));
+
+create index IDX_TICKET_VEHICLE_REG_NUMBER_ID on ticket(VEHICLE_REG_NUMBER, ID);
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+create index IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER_ID on ticket_archive(VEHICLE_REG_NUMBER, ID);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -45,6 +69,30 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create table vehicle_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_VISIT int NOT NULL);
+
+create table ticket_journal(
+ JOURNAL_NAME varchar(100) PRIMARY KEY,
+ LAST_SEQUENCE bigint NOT NULL);
+
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME))
+partition by range columns(OUT_TIME) (
+ partition p_future values less than (MAXVALUE));
+
+create index IDX_TICKET_VEHICLE_REG_NUMBER_ID on ticket(VEHICLE_REG_NUMBER, ID);
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+create index IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER_ID on ticket_archive(VEHICLE_REG_NUMBER, ID);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
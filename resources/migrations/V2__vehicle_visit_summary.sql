@@ -0,0 +1,8 @@
+/* Per-plate ticket counter read by TicketDAO.getNbTicket, back-filled from the existing tickets */
+create table vehicle_visit(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_VISIT int NOT NULL);
+
+insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT)
+select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER;
+commit;
@@ -0,0 +1,9 @@
+/* Latest ticket of a plate (GET_TICKET, exit lookup): reads one index entry instead of scanning ticket */
+create index IDX_TICKET_VEHICLE_REG_NUMBER_ID on ticket(VEHICLE_REG_NUMBER, ID);
+
+/* Open tickets (OUT_TIME IS NULL): MySQL has no partial index, NULL keys come first in this one so
+   the open tickets are a single short range of it */
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
+
+/* Next available spot of a type (GET_NEXT_PARKING_SPOT) */
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
@@ -0,0 +1,5 @@
+/* Write-behind ticket journal: last journal sequence inserted into ticket, updated in the same transaction as
+   the inserted tickets so that replaying a journal after a crash never inserts a ticket twice */
+create table ticket_journal(
+ JOURNAL_NAME varchar(100) PRIMARY KEY,
+ LAST_SEQUENCE bigint NOT NULL);
@@ -0,0 +1,17 @@
+/* Cold storage for closed tickets, filled by TicketArchiveService. Partitioned by month of exit so that reports
+   on a period only read its partitions and old months can be dropped or exported whole. TicketDAO adds the
+   monthly partitions by splitting p_future, which stays empty. MySQL requires the partitioning column in the
+   primary key and does not allow foreign keys on partitioned tables. */
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, OUT_TIME))
+partition by range columns(OUT_TIME) (
+ partition p_future values less than (MAXVALUE));
+
+/* Earlier visits of a plate (recurring user flag of the reports) */
+create index IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER_ID on ticket_archive(VEHICLE_REG_NUMBER, ID);
@@ -0,0 +1,101 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataAccessBenchmark {
+
+    private static final int CAR_SPOTS = 2000;
+    private static final int BIKE_SPOTS = 500;
+    private static final int HISTORIC_TICKETS = 20000;
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private int plateSequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("benchmark");
+        dataBaseConfig.createSchema(CAR_SPOTS, BIKE_SPOTS);
+
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        // Closed history spread over 1000 plates so that plate lookups go through the database
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < HISTORIC_TICKETS; i++) {
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(1 + i % CAR_SPOTS, ParkingType.CAR, false));
+            ticket.setVehicleRegNumber(plate(i % 1000));
+            ticket.setInTime(new Date(now - 7200000));
+            ticket.setOutTime(new Date(now - 3600000));
+            ticket.setPrice(1.5);
+            ticketDAO.saveTicket(ticket);
+        }
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO.loadOpenTickets();
+    }
+
+    private static String plate(int i) {
+        return "BM" + i;
+    }
+
+    @Benchmark
+    public int getNextAvailableSlot() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public boolean reserveAndReleaseSpot() {
+        ParkingSpot parkingSpot = parkingSpotDAO.reserveNextAvailable(ParkingType.CAR);
+        parkingSpot.setAvailable(true);
+        return parkingSpotDAO.updateParking(parkingSpot);
+    }
+
+    @Benchmark
+    public Ticket getTicket() {
+        return ticketDAO.getTicket(plate(plateSequence++ % 1000));
+    }
+
+    @Benchmark
+    public int getNbTicket() {
+        return ticketDAO.getNbTicket(plate(plateSequence++ % 1000));
+    }
+
+    @Benchmark
+    public boolean saveAndUpdateTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(CAR_SPOTS + 1, ParkingType.BIKE, false));
+        ticket.setVehicleRegNumber(plate(plateSequence++ % 1000));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 3600000));
+        ticketDAO.saveTicket(ticket);
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.0);
+        return ticketDAO.updateTicket(ticket);
+    }
+}
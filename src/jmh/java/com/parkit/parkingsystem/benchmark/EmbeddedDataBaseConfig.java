@@ -0,0 +1,67 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-process H2 database in MySQL mode with the same schema as resources/Data.sql, so the DAOs
+ * can be measured without a MySQL server. Latencies exclude the network round trip.
+ */
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    private final String name;
+
+    public EmbeddedDataBaseConfig(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected String getUrl() {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    public void createSchema(int carSpots, int bikeSpots) throws Exception {
+        Connection con = getConnection();
+        try {
+            Statement statement = con.createStatement();
+            statement.execute("drop all objects");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL, "
+                    + "VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME, "
+                    + "FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            statement.execute("create table vehicle_visit(VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY, NB_VISIT int NOT NULL)");
+            statement.execute("create table ticket_archive(ID int NOT NULL, PARKING_NUMBER int NOT NULL, "
+                    + "VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME NOT NULL, "
+                    + "PRIMARY KEY (ID, OUT_TIME))");
+            statement.execute("create index IDX_TICKET_VEHICLE_REG_NUMBER_ID on ticket(VEHICLE_REG_NUMBER, ID)");
+            statement.execute("create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME)");
+            statement.execute("create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER)");
+            statement.execute("create index IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER_ID on ticket_archive(VEHICLE_REG_NUMBER, ID)");
+            int parkingNumber = 1;
+            for (int i = 0; i < carSpots; i++) {
+                statement.execute("insert into parking values(" + parkingNumber++ + ", true, 'CAR')");
+            }
+            for (int i = 0; i < bikeSpots; i++) {
+                statement.execute("insert into parking values(" + parkingNumber++ + ", true, 'BIKE')");
+            }
+            statement.close();
+        } catch (SQLException e) {
+            closeConnection(con);
+            throw e;
+        }
+        closeConnection(con);
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+    private static final long MILLIS_PER_HOUR = 3600000;
+
+    @Param({"CAR", "BIKE"})
+    public ParkingType parkingType;
+
+    @Param({"false", "true"})
+    public boolean discount;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Ticket ticket;
+    private Date inTime;
+    private Date outTime;
+    private double rawPrice;
+
+    @Setup
+    public void setUp() {
+        inTime = new Date(System.currentTimeMillis() - 3 * MILLIS_PER_HOUR - 17 * 60000);
+        outTime = new Date();
+        ticket = newTicket();
+        rawPrice = 4.123456789;
+    }
+
+    private Ticket newTicket() {
+        Ticket newTicket = new Ticket();
+        newTicket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        newTicket.setVehicleRegNumber("ABCDEF");
+        newTicket.setInTime(inTime);
+        newTicket.setOutTime(outTime);
+        return newTicket;
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        fareCalculatorService.calculateFare(ticket, discount);
+        return ticket.getPrice();
+    }
+
+    @Benchmark
+    public long calculateFareInCents() {
+        return fareCalculatorService.calculateFareInCents(inTime.getTime(), outTime.getTime(), parkingType.ordinal(), discount);
+    }
+
+    @Benchmark
+    public Ticket newTicketAndCalculateFare() {
+        Ticket newTicket = newTicket();
+        fareCalculatorService.calculateFare(newTicket, discount);
+        return newTicket;
+    }
+
+    @Benchmark
+    public double setPriceRounding() {
+        ticket.setPrice(rawPrice);
+        return ticket.getPrice();
+    }
+}
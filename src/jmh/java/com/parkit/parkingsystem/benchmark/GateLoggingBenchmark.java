@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Gate entry + exit cycles with the JDBC lifecycle lines written synchronously at every call, as they were at
+// INFO level, against the shipped setup where they are TRACE and the remaining logs go through an async appender
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GateLoggingBenchmark {
+
+    private static final long MILLIS_PER_HOUR = 3600000;
+
+    @Param({"perCallSync", "traceAsync"})
+    public String logging;
+
+    private ParkingService parkingService;
+    private Path logFile;
+    private int plateSequence;
+
+    @Setup
+    public void setUp() throws Exception {
+        logFile = Files.createTempFile("gate-logging", ".log");
+        configureLogging("perCallSync".equals(logging));
+
+        EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("gate-logging-" + logging);
+        dataBaseConfig.createSchema(200, 50);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO.loadOpenTickets();
+        parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+    }
+
+    private void configureLogging(boolean perCallSync) {
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("FILE", "File")
+                .addAttribute("fileName", logFile.toString())
+                .addAttribute("immediateFlush", perCallSync)
+                .add(builder.newLayout("PatternLayout").addAttribute("pattern", "%d %-5p [%t] %c{1} - %m%n")));
+        String rootAppender = "FILE";
+        if (!perCallSync) {
+            builder.add(builder.newAppender("ASYNC", "Async")
+                    .addAttribute("bufferSize", 8192)
+                    .addComponent(builder.newAppenderRef("FILE")));
+            rootAppender = "ASYNC";
+        }
+        builder.add(builder.newRootLogger(Level.INFO).add(builder.newAppenderRef(rootAppender)));
+        //the per call lines of DataBaseConfig used to be INFO, enabling TRACE brings them back
+        builder.add(builder.newLogger("DataBaseConfig", perCallSync ? Level.TRACE : Level.INFO));
+        Configurator.reconfigure(builder.build());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Configurator.reconfigure();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public GateResult entryAndExit() {
+        String plate = "GL" + plateSequence++;
+        Date now = new Date();
+        parkingService.enterVehicle(plate, ParkingType.CAR, new Date(now.getTime() - MILLIS_PER_HOUR));
+        return parkingService.exitVehicle(plate, now);
+    }
+}
@@ -1,13 +1,156 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.constants.Facility;
+import com.parkit.parkingsystem.dao.ParkingStorage;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.TicketArchiveService;
+import com.parkit.parkingsystem.service.TicketExportService;
+import com.parkit.parkingsystem.service.TicketReRatingService;
+import com.parkit.parkingsystem.simulation.GateEvent;
+import com.parkit.parkingsystem.simulation.SyntheticTraffic;
+import com.parkit.parkingsystem.simulation.TicketTrace;
+import com.parkit.parkingsystem.simulation.TrafficSimulator;
+import com.parkit.parkingsystem.web.GateHttpServer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    public static void main(String args[]) throws IOException, SQLException, InterruptedException {
         logger.info("Initializing Parking System");
+        Metrics.start();
+        if(args.length > 0 && "rerate".equals(args[0])){
+            new TicketReRatingService(new TicketDAO(facilityId()), new FareCalculatorService()).reRateClosedTickets();
+            return;
+        }
+        if(args.length > 0 && "export".equals(args[0])){
+            requireArguments(args, 4, "export <from> <to> <file> [resume]");
+            export(args);
+            return;
+        }
+        if(args.length > 0 && "archive".equals(args[0])){
+            requireArguments(args, 2, "archive <days>");
+            new TicketArchiveService(new TicketDAO(facilityId())).archiveTicketsClosedDaysAgo(Integer.parseInt(args[1]));
+            return;
+        }
+        if(args.length > 0 && "simulate".equals(args[0])){
+            requireArguments(args, 4, "simulate synthetic <hours> <arrivalsPerHour> [lanes] [compression]"
+                    + System.lineSeparator() + "       simulate replay <from> <to> [lanes] [compression]");
+            simulate(args);
+            return;
+        }
+        if(args.length > 0 && "serve".equals(args[0])){
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
         InteractiveShell.loadInterface();
     }
+
+    // A subcommand missing some of its arguments stops with its usage rather than opening the console
+    private static void requireArguments(String[] args, int count, String usage) {
+        if(args.length < count){
+            System.err.println("Usage: " + usage);
+            System.exit(2);
+        }
+    }
+
+    // export <from> <to> <file> [resume], dates as yyyy-MM-dd, to excluded
+    private static void export(String[] args) throws IOException, SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        Date from = Date.from(LocalDate.parse(args[1]).atStartOfDay(zone).toInstant());
+        Date to = Date.from(LocalDate.parse(args[2]).atStartOfDay(zone).toInstant());
+        boolean resume = args.length > 4 && "resume".equals(args[4]);
+        new TicketExportService(new TicketDAO(facilityId())).export(from, to, Paths.get(args[3]), resume);
+    }
+
+    // simulate synthetic <hours> <arrivalsPerHour> [lanes] [compression]
+    // simulate replay <from> <to> [lanes] [compression], dates as yyyy-MM-dd, to excluded
+    private static void simulate(String[] args) throws IOException, InterruptedException {
+        //the simulator writes real tickets, keep it away from the storage of a car park unless asked for
+        boolean mapped = "mapped".equals(System.getProperty("parkit.storage"));
+        if(!mapped && !Boolean.getBoolean("parkit.simulation.allowDatabase")){
+            logger.error("simulate needs -Dparkit.storage=mapped,"
+                    + " or -Dparkit.simulation.allowDatabase=true to write to a test database");
+            return;
+        }
+        Path simulationDir = null;
+        if(mapped){
+            simulationDir = simulationDir();
+            if(simulationDir == null){
+                logger.error("-Dparkit.simulation.dir must not be the storage directory of the car park");
+                return;
+            }
+        }
+        List<GateEvent> events;
+        if("replay".equals(args[1])){
+            ZoneId zone = ZoneId.systemDefault();
+            Date from = Date.from(LocalDate.parse(args[2]).atStartOfDay(zone).toInstant());
+            Date to = Date.from(LocalDate.parse(args[3]).atStartOfDay(zone).toInstant());
+            events = TicketTrace.load(new TicketDAO(facilityId()), from, to);
+            if(events == null){
+                logger.error("Unable to read the tickets to replay");
+                return;
+            }
+        }else{
+            SyntheticTraffic traffic = new SyntheticTraffic(Long.getLong("parkit.simulation.seed", 42));
+            traffic.setDurationMillis(TimeUnit.HOURS.toMillis(Long.parseLong(args[2])));
+            traffic.setArrivalsPerHour(Double.parseDouble(args[3]));
+            events = traffic.generate();
+        }
+        int lanes = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        double timeCompression = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+        try (ParkingStorage storage = mapped ? ParkingStorage.openMappedFiles(simulationDir, false)
+                : ParkingStorage.fromSystemProperties()) {
+            storage.warmUp();
+            ParkingService parkingService = new ParkingService(storage.getParkingSpotRepository(), storage.getTicketRepository());
+            System.out.println(new TrafficSimulator(parkingService, lanes, timeCompression).run(events));
+        }
+    }
+
+    // Mapped files of a simulation: -Dparkit.simulation.dir, or a new temporary directory. Null when it is the
+    // parkit.storage.dir of the car park, whose tickets and spots the simulation would overwrite
+    private static Path simulationDir() throws IOException {
+        String dir = System.getProperty("parkit.simulation.dir");
+        if(dir == null){
+            return Files.createTempDirectory("parkit-simulation");
+        }
+        Path simulationDir = Paths.get(dir).toAbsolutePath().normalize();
+        Path storageDir = Paths.get(System.getProperty("parkit.storage.dir", "parkit-data")).toAbsolutePath().normalize();
+        return simulationDir.equals(storageDir) ? null : simulationDir;
+    }
+
+    // Car park the command works on, see ParkingStorage
+    private static int facilityId() {
+        return Integer.getInteger("parkit.facility", Facility.DEFAULT_ID);
+    }
+
+    private static void serve(int port) throws IOException {
+        ParkingStorage storage = ParkingStorage.fromSystemProperties();
+        //warm the in-memory indexes before the first gate event
+        storage.warmUp();
+        ParkingService parkingService = new ParkingService(storage.getParkingSpotRepository(), storage.getTicketRepository());
+        GateHttpServer server = new GateHttpServer(parkingService, storage.getParkingSpotRepository(),
+                new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(2);
+            storage.close();
+        }));
+        server.start();
+    }
 }
@@ -0,0 +1,513 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bounded pool of JDBC connections. Borrowed connections are proxies: calling close() on them
+ * hands the physical connection back to the pool instead of closing it.
+ * <p>
+ * Each physical connection also keeps its prepared statements open, in an LRU cache keyed by SQL and statement
+ * options: preparing a cacheable SQL string again returns the statement prepared the first time, and closing it
+ * only clears its parameters. A statement still open when the same SQL is prepared again is not shared, the
+ * second caller gets a statement of its own.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    // A connection returned less than this long ago is handed out again without a validation round trip
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory connectionFactory;
+    private final ConnectionPoolSettings settings;
+    private final Predicate<String> cacheableStatements;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReturned = lock.newCondition();
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private int totalCount;
+    private boolean closed;
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(String name, ConnectionFactory connectionFactory, ConnectionPoolSettings settings) {
+        this(name, connectionFactory, settings, sql -> true);
+    }
+
+    // Only the SQL accepted by cacheableStatements goes through the statement cache, e.g. the fixed DAO queries
+    // and not the multi-row inserts built for each batch size
+    public ConnectionPool(String name, ConnectionFactory connectionFactory, ConnectionPoolSettings settings,
+                          Predicate<String> cacheableStatements) {
+        if (settings.getMaxSize() < 1 || settings.getMinSize() < 0 || settings.getMinSize() > settings.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size, min:" + settings.getMinSize() + " max:" + settings.getMaxSize());
+        }
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.settings = settings;
+        this.cacheableStatements = cacheableStatements;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-evictor-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evictor.scheduleWithFixedDelay(this::maintain, 0, settings.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getBorrowTimeoutMillis());
+        while (true) {
+            PooledConnection pooledConnection = null;
+            lock.lock();
+            try {
+                while (pooledConnection == null) {
+                    if (closed) {
+                        throw new SQLException("Connection pool " + name + " is closed");
+                    }
+                    pooledConnection = idleConnections.pollFirst();
+                    if (pooledConnection == null) {
+                        if (totalCount < settings.getMaxSize()) {
+                            totalCount++;
+                            break;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new SQLTimeoutException("Timed out after " + settings.getBorrowTimeoutMillis()
+                                    + " ms waiting for a connection from pool " + name);
+                        }
+                        connectionReturned.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection from pool " + name, e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (pooledConnection == null) {
+                return openConnection().checkOut();
+            }
+            if (isValid(pooledConnection)) {
+                return pooledConnection.checkOut();
+            }
+            logger.warn("Discarding invalid connection from pool " + name);
+            discard(pooledConnection);
+        }
+    }
+
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return totalCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return totalCount - idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idleConnections);
+            totalCount -= idleConnections.size();
+            idleConnections.clear();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        evictor.shutdownNow();
+        for (PooledConnection pooledConnection : toClose) {
+            closePhysical(pooledConnection);
+        }
+    }
+
+    // Evicts connections idle for too long, then tops the pool back up to its minimum size
+    void maintain() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+            while (oldestFirst.hasNext() && totalCount > settings.getMinSize()) {
+                PooledConnection pooledConnection = oldestFirst.next();
+                if (now - pooledConnection.lastReturnedAt < settings.getIdleTimeoutMillis()) {
+                    break;
+                }
+                oldestFirst.remove();
+                totalCount--;
+                evicted.add(pooledConnection);
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooledConnection : evicted) {
+            closePhysical(pooledConnection);
+        }
+
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || totalCount >= settings.getMinSize()) {
+                    return;
+                }
+                totalCount++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                release(openConnection());
+            } catch (SQLException e) {
+                logger.warn("Unable to pre-open connection for pool " + name + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        try {
+            return new PooledConnection(connectionFactory.create());
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                totalCount--;
+                connectionReturned.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooledConnection) {
+        if (System.currentTimeMillis() - pooledConnection.lastReturnedAt < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pooledConnection.physical.isValid(settings.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        try {
+            if (pooledConnection.physical.isClosed()) {
+                discard(pooledConnection);
+                return;
+            }
+            if (!pooledConnection.physical.getAutoCommit()) {
+                pooledConnection.physical.rollback();
+                pooledConnection.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.warn("Discarding connection that could not be reset for pool " + name, e);
+            discard(pooledConnection);
+            return;
+        }
+        pooledConnection.lastReturnedAt = System.currentTimeMillis();
+        boolean poolClosed;
+        lock.lock();
+        try {
+            poolClosed = closed;
+            if (poolClosed) {
+                totalCount--;
+            } else {
+                idleConnections.addFirst(pooledConnection);
+                connectionReturned.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (poolClosed) {
+            closePhysical(pooledConnection);
+        }
+    }
+
+    private void discard(PooledConnection pooledConnection) {
+        closePhysical(pooledConnection);
+        lock.lock();
+        try {
+            totalCount--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closePhysical(PooledConnection pooledConnection) {
+        try {
+            pooledConnection.physical.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+    }
+
+    private class PooledConnection implements InvocationHandler {
+
+        private final Connection physical;
+        private volatile long lastReturnedAt;
+        private Connection borrowedProxy;
+        // Only used by the thread that borrowed the connection
+        private final Map<List<Object>, CachedStatement> statementCache = new LinkedHashMap<List<Object>, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedStatement> eldest) {
+                if (size() <= settings.getStatementCacheSize()) {
+                    return false;
+                }
+                if (eldest.getValue().evict()) {
+                    evictedInUse.add(eldest.getValue());
+                }
+                return true;
+            }
+        };
+        // Statements the borrower still holds that are not in the cache: evicted while in use, or never cached
+        private final List<CachedStatement> evictedInUse = new ArrayList<>();
+        private final List<Statement> uncachedStatements = new ArrayList<>();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private PreparedStatement prepareCached(Method method, Object[] args) throws Throwable {
+            //the options of prepareStatement(sql, ...) are part of the key
+            List<Object> key = Arrays.asList(args);
+            CachedStatement cachedStatement = statementCache.get(key);
+            if (cachedStatement != null && !cachedStatement.inUse) {
+                statementCacheHits.incrementAndGet();
+                return cachedStatement.checkOut();
+            }
+            statementCacheMisses.incrementAndGet();
+            PreparedStatement statement = (PreparedStatement) invokePhysical(method, args);
+            if (cachedStatement != null) {
+                uncachedStatements.add(statement);
+                return statement;
+            }
+            cachedStatement = new CachedStatement(statement, this);
+            statementCache.put(key, cachedStatement);
+            return cachedStatement.checkOut();
+        }
+
+        private Object invokePhysical(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        Connection checkOut() {
+            borrowedProxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+            return borrowedProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled connection from " + name;
+                case "close":
+                    if (borrowedProxy == proxy) {
+                        borrowedProxy = null;
+                        //statements the borrower left open are taken back along with the connection
+                        for (CachedStatement cachedStatement : statementCache.values()) {
+                            cachedStatement.reclaim();
+                        }
+                        for (CachedStatement cachedStatement : evictedInUse) {
+                            cachedStatement.reclaim();
+                        }
+                        evictedInUse.clear();
+                        closeUncachedStatements();
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    if (borrowedProxy != proxy) {
+                        return true;
+                    }
+                    break;
+                default:
+                    if (borrowedProxy != proxy) {
+                        throw new SQLException("Connection has already been returned to pool " + name);
+                    }
+                    if ("prepareStatement".equals(method.getName()) && settings.getStatementCacheSize() > 0
+                            && cacheableStatements.test((String) args[0])) {
+                        return prepareCached(method, args);
+                    }
+                    Object result = invokePhysical(method, args);
+                    if (result instanceof Statement) {
+                        uncachedStatements.add((Statement) result);
+                    }
+                    return result;
+            }
+            return invokePhysical(method, args);
+        }
+
+        private void closeUncachedStatements() {
+            for (Statement statement : uncachedStatements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    logger.warn("Error while closing prepared statement left open", e);
+                }
+            }
+            uncachedStatements.clear();
+        }
+    }
+
+    private static class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement physical;
+        private final PooledConnection connection;
+        private PreparedStatement proxy;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement physical, PooledConnection connection) {
+            this.physical = physical;
+            this.connection = connection;
+        }
+
+        PreparedStatement checkOut() {
+            inUse = true;
+            proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+            return proxy;
+        }
+
+        // Dropped from the cache: closed now, or by its user or reclaim() if it is still open. Returns true in the
+        // latter case.
+        boolean evict() {
+            evicted = true;
+            if (!inUse) {
+                closePhysical();
+            }
+            return inUse;
+        }
+
+        void reclaim() {
+            if (inUse) {
+                inUse = false;
+                proxy = null;
+                if (evicted) {
+                    closePhysical();
+                    return;
+                }
+                try {
+                    physical.clearParameters();
+                } catch (SQLException e) {
+                    logger.warn("Error while resetting cached prepared statement", e);
+                }
+            }
+        }
+
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                logger.error("Error while closing cached prepared statement", e);
+            }
+        }
+
+        @Override
+        public Object invoke(Object statementProxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return statementProxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(statementProxy);
+                case "toString":
+                    return "Cached " + physical;
+                case "close":
+                    if (proxy == statementProxy && inUse) {
+                        inUse = false;
+                        proxy = null;
+                        if (evicted) {
+                            closePhysical();
+                        } else {
+                            physical.clearParameters();
+                            physical.clearBatch();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return proxy != statementProxy || physical.isClosed();
+                case "getConnection":
+                    return connection.borrowedProxy;
+                default:
+                    if (proxy != statementProxy) {
+                        throw new SQLException("Prepared statement is closed");
+                    }
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
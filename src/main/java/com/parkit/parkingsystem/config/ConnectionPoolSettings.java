@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.config;
+
+public class ConnectionPoolSettings {
+
+    private int minSize = 2;
+    private int maxSize = 10;
+    private long borrowTimeoutMillis = 5000;
+    private long idleTimeoutMillis = 300000;
+    private long evictionIntervalMillis = 60000;
+    private int validationTimeoutSeconds = 2;
+    private int statementCacheSize = 32;
+
+    // Defaults can be overridden with -Dparkit.db.pool.minSize=... etc.
+    public static ConnectionPoolSettings fromSystemProperties() {
+        ConnectionPoolSettings settings = new ConnectionPoolSettings();
+        settings.setMinSize(Integer.getInteger("parkit.db.pool.minSize", settings.getMinSize()));
+        settings.setMaxSize(Integer.getInteger("parkit.db.pool.maxSize", settings.getMaxSize()));
+        settings.setBorrowTimeoutMillis(Long.getLong("parkit.db.pool.borrowTimeoutMillis", settings.getBorrowTimeoutMillis()));
+        settings.setIdleTimeoutMillis(Long.getLong("parkit.db.pool.idleTimeoutMillis", settings.getIdleTimeoutMillis()));
+        settings.setEvictionIntervalMillis(Long.getLong("parkit.db.pool.evictionIntervalMillis", settings.getEvictionIntervalMillis()));
+        settings.setValidationTimeoutSeconds(Integer.getInteger("parkit.db.pool.validationTimeoutSeconds", settings.getValidationTimeoutSeconds()));
+        settings.setStatementCacheSize(Integer.getInteger("parkit.db.pool.statementCacheSize", settings.getStatementCacheSize()));
+        return settings;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    // Prepared statements kept open per pooled connection, 0 disables the cache
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -1,37 +1,262 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
+    private static final OperationMetrics GET_CONNECTION_METRICS = Metrics.operation("DataBaseConfig.getConnection");
+    private static final OperationMetrics GET_READ_CONNECTION_METRICS = Metrics.operation("DataBaseConfig.getReadConnection");
+    private static final long REPLICA_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    // One pool per database URL, shared by every DAO pointing at that database
+    private static final Map<String, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+    // Threads running the async DAO calls, one executor per database URL like the pools
+    private static final Map<String, ExecutorService> ioExecutors = new ConcurrentHashMap<>();
+    private static final Set<String> checkedSchemas = ConcurrentHashMap.newKeySet();
+    // Replicas that failed to connect, skipped until the nanoTime they map to
+    private static final Map<String, Long> unavailableReplicas = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    // The fixed SQL strings of DBConstants, kept prepared on each pooled connection
+    private static final Set<String> CONSTANT_STATEMENTS = constantStatements();
+
+    // Indexes added by resources/migrations that the DAO queries rely on, as {table, index}
+    private static final String[][] EXPECTED_INDEXES = {
+            {"ticket", "IDX_TICKET_VEHICLE_REG_NUMBER_ID"},
+            {"ticket", "IDX_TICKET_OUT_TIME"},
+            {"parking", "IDX_PARKING_TYPE_AVAILABLE"},
+            {"ticket_archive", "IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER_ID"}
+    };
+
+    // Database of one car park, as mapped by the -Dparkit.shards file
+    public static DataBaseConfig forFacility(int facilityId) {
+        return ShardRouter.fromSystemProperties().getDataBaseConfig(facilityId);
+    }
 
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","rootroot");
+        long start = System.nanoTime();
+        logger.trace("Create DB connection");
+        Connection con;
+        try {
+            con = getConnectionPool().borrow();
+        } catch (SQLException e) {
+            GET_CONNECTION_METRICS.recordFailure();
+            throw e;
+        } finally {
+            GET_CONNECTION_METRICS.record(start);
+        }
+        if(checkedSchemas.add(getUrl())){
+            checkExpectedIndexes(con);
+        }
+        return con;
+    }
+
+    // For reads that tolerate replication lag, such as visit counts and reports: a connection to the replicas in
+    // turn, or to the primary when there is no replica or none answers. Writes, and the reads that must see them
+    // (open tickets, spot availability), use getConnection().
+    public Connection getReadConnection() throws ClassNotFoundException, SQLException {
+        List<String> replicaUrls = getReplicaUrls();
+        for (int attempt = 0; attempt < replicaUrls.size(); attempt++) {
+            String replicaUrl = replicaUrls.get(Math.floorMod(nextReplica.getAndIncrement(), replicaUrls.size()));
+            Long retryAt = unavailableReplicas.get(replicaUrl);
+            if (retryAt != null && System.nanoTime() - retryAt < 0) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                Connection con = connectionPools.computeIfAbsent(replicaUrl, this::createReplicaConnectionPool).borrow();
+                unavailableReplicas.remove(replicaUrl);
+                return con;
+            } catch (SQLTimeoutException e) {
+                //all the connections of a healthy replica are in use, only this read goes elsewhere
+                GET_READ_CONNECTION_METRICS.recordFailure();
+                logger.warn("No free connection to replica " + replicaUrl + ", trying the next database");
+            } catch (SQLException e) {
+                GET_READ_CONNECTION_METRICS.recordFailure();
+                unavailableReplicas.put(replicaUrl, System.nanoTime() + REPLICA_RETRY_NANOS);
+                logger.warn("Replica " + replicaUrl + " unavailable, not used for 30 s", e);
+            } finally {
+                GET_READ_CONNECTION_METRICS.record(start);
+            }
+        }
+        return getConnection();
+    }
+
+    // Returns the missing indexes as table.index, logging a warning for each
+    public List<String> checkExpectedIndexes(Connection con){
+        List<String> missingIndexes = new ArrayList<>();
+        try {
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_INDEX_NAMES);
+            Map<String, Set<String>> indexesByTable = new HashMap<>();
+            for(String[] expectedIndex : EXPECTED_INDEXES){
+                Set<String> indexes = indexesByTable.get(expectedIndex[0]);
+                if(indexes == null){
+                    indexes = new HashSet<>();
+                    ps.setString(1, expectedIndex[0]);
+                    ResultSet rs = ps.executeQuery();
+                    while(rs.next()){
+                        indexes.add(rs.getString(1).toUpperCase());
+                    }
+                    closeResultSet(rs);
+                    indexesByTable.put(expectedIndex[0], indexes);
+                }
+                if(!indexes.contains(expectedIndex[1])){
+                    missingIndexes.add(expectedIndex[0] + "." + expectedIndex[1]);
+                    logger.warn("Missing index " + expectedIndex[1] + " on table " + expectedIndex[0]
+                            + ", apply the scripts of resources/migrations to avoid full table scans");
+                }
+            }
+            closePreparedStatement(ps);
+        } catch (SQLException e) {
+            logger.warn("Unable to check the database indexes", e);
+        }
+        return missingIndexes;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPools.computeIfAbsent(getUrl(), url -> createConnectionPool());
+    }
+
+    public ExecutorService getIoExecutor() {
+        return ioExecutors.computeIfAbsent(getUrl(), url -> createIoExecutor());
+    }
+
+    // Sized like the connection pool by default: more threads would only queue on borrow()
+    protected ExecutorService createIoExecutor() {
+        int threads = Integer.getInteger("parkit.db.ioThreads", ConnectionPoolSettings.fromSystemProperties().getMaxSize());
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "db-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    protected String getUrl() {
+        //useCursorFetch lets statements with a fetch size stream large result sets instead of loading them whole,
+        //useServerPrepStmts parses each statement once on the server, for as long as the pool keeps it open
+        return "jdbc:mysql://localhost:3306/prod?useCursorFetch=true&useServerPrepStmts=true";
+    }
+
+    // Read replicas of the database of getUrl(), from the comma-separated -Dparkit.db.replicaUrls
+    protected List<String> getReplicaUrls() {
+        return splitUrls(System.getProperty("parkit.db.replicaUrls"));
+    }
+
+    static List<String> splitUrls(String urls) {
+        List<String> list = new ArrayList<>();
+        if (urls != null) {
+            for (String url : urls.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    list.add(url.trim());
+                }
+            }
+        }
+        return list;
+    }
+
+    protected String getUser() {
+        return "root";
+    }
+
+    protected String getPassword() {
+        return "rootroot";
+    }
+
+    protected ConnectionPool createConnectionPool() {
+        loadDriver();
+        String url = getUrl();
+        String user = getUser();
+        String password = getPassword();
+        return new ConnectionPool(url, () -> DriverManager.getConnection(url, user, password),
+                ConnectionPoolSettings.fromSystemProperties(), CONSTANT_STATEMENTS::contains);
+    }
+
+    // Same credentials as the primary; read-only connections make a write routed to a replica fail loudly
+    protected ConnectionPool createReplicaConnectionPool(String url) {
+        loadDriver();
+        String user = getUser();
+        String password = getPassword();
+        return new ConnectionPool(url, () -> {
+            Connection con = DriverManager.getConnection(url, user, password);
+            con.setReadOnly(true);
+            return con;
+        }, ConnectionPoolSettings.fromSystemProperties(), CONSTANT_STATEMENTS::contains);
+    }
+
+    private static void loadDriver() {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            logger.error("MySQL JDBC driver not found on the classpath", e);
+        }
+    }
+
+    private static Set<String> constantStatements() {
+        Set<String> statements = new HashSet<>();
+        for (Field field : DBConstants.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    statements.add((String) field.get(null));
+                } catch (IllegalAccessException e) {
+                    logger.warn("Unable to read " + field.getName(), e);
+                }
+            }
+        }
+        return statements;
     }
 
     public void closeConnection(Connection con){
         if(con!=null){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logger.trace("Closing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection",e);
             }
         }
     }
 
+    public void rollback(Connection con){
+        if(con!=null){
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction",e);
+            }
+        }
+    }
+
     public void closePreparedStatement(PreparedStatement ps) {
         if(ps!=null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logger.trace("Closing Prepared Statement");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement",e);
             }
@@ -42,7 +267,7 @@ public class DataBaseConfig {
         if(rs!=null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logger.trace("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set",e);
             }
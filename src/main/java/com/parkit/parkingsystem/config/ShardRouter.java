@@ -0,0 +1,174 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.Facility;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps each car park to the database holding its parking and ticket tables, read from the properties file named
+ * by -Dparkit.shards:
+ * <pre>
+ * facility.1.url=jdbc:mysql://db1:3306/prod?useCursorFetch=true&amp;useServerPrepStmts=true
+ * facility.7.url=jdbc:mysql://db2:3306/airport?useCursorFetch=true&amp;useServerPrepStmts=true
+ * facility.7.user=parkit
+ * facility.7.password=secret
+ * facility.7.replicaUrls=jdbc:mysql://db2-replica:3306/airport?useCursorFetch=true&amp;useServerPrepStmts=true
+ * </pre>
+ * Each database or schema is created with resources/Data.sql and the migrations and serves a single car park.
+ * Connection pools are per URL, so a busy car park only competes for connections with itself. Without an
+ * entry, the default facility uses the database of DataBaseConfig. The optional replicas (comma-separated) take
+ * the reads of DataBaseConfig.getReadConnection().
+ */
+public class ShardRouter {
+
+    private static final Logger logger = LogManager.getLogger("ShardRouter");
+
+    private static final Pattern KEY = Pattern.compile("facility\\.(\\d+)\\.(url|user|password|replicaUrls)");
+    private static final Pattern SERVER_URL = Pattern.compile("(jdbc:[^:]+)://([^/:?]+)(?::(\\d+))?/([^?;]*).*");
+    private static final int MYSQL_DEFAULT_PORT = 3306;
+
+    private static volatile ShardRouter systemRouter;
+
+    private final Map<Integer, Properties> shards = new TreeMap<>();
+    private final Map<Integer, DataBaseConfig> dataBaseConfigs = new ConcurrentHashMap<>();
+
+    public ShardRouter(Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            Matcher matcher = KEY.matcher(key);
+            if (matcher.matches()) {
+                shards.computeIfAbsent(Integer.valueOf(matcher.group(1)), facilityId -> new Properties())
+                        .setProperty(matcher.group(2), properties.getProperty(key));
+            }
+        }
+        Map<String, Integer> facilitiesByUrl = new TreeMap<>();
+        if (!shards.containsKey(Facility.DEFAULT_ID)) {
+            //without an entry, the default facility uses the database of DataBaseConfig
+            facilitiesByUrl.put(databaseKey(new DataBaseConfig().getUrl()), Facility.DEFAULT_ID);
+        }
+        for (Map.Entry<Integer, Properties> shard : shards.entrySet()) {
+            String url = shard.getValue().getProperty("url");
+            if (url == null) {
+                throw new IllegalArgumentException("No url for facility " + shard.getKey());
+            }
+            //two car parks in the same tables would hand out each other's spots
+            Integer otherFacility = facilitiesByUrl.put(databaseKey(url), shard.getKey());
+            if (otherFacility != null) {
+                throw new IllegalArgumentException("Facilities " + otherFacility + " and " + shard.getKey()
+                        + " share the database " + url);
+            }
+        }
+    }
+
+    // Host, port and schema of the URL, so that two spellings of the same database compare equal
+    private static String databaseKey(String url) {
+        Matcher matcher = SERVER_URL.matcher(url);
+        if (!matcher.matches()) {
+            int query = url.indexOf('?');
+            return query < 0 ? url : url.substring(0, query);
+        }
+        String host = matcher.group(2).toLowerCase(Locale.ROOT);
+        if ("127.0.0.1".equals(host)) {
+            host = "localhost";
+        }
+        String port = matcher.group(3);
+        if (port == null && "jdbc:mysql".equals(matcher.group(1))) {
+            port = String.valueOf(MYSQL_DEFAULT_PORT);
+        }
+        return matcher.group(1) + "://" + host + ":" + (port == null ? "" : port) + "/" + matcher.group(4);
+    }
+
+    public static ShardRouter fromSystemProperties() {
+        if (systemRouter == null) {
+            synchronized (ShardRouter.class) {
+                if (systemRouter == null) {
+                    systemRouter = new ShardRouter(loadShards(System.getProperty("parkit.shards")));
+                }
+            }
+        }
+        return systemRouter;
+    }
+
+    private static Properties loadShards(String file) {
+        Properties properties = new Properties();
+        if (file != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read the shard map " + file, e);
+            }
+            logger.info("Loaded the shard map " + file);
+        }
+        return properties;
+    }
+
+    public Set<Integer> getFacilityIds() {
+        return shards.keySet();
+    }
+
+    // The same instance for every call, so the DAOs of a facility share its connection pool
+    public DataBaseConfig getDataBaseConfig(int facilityId) {
+        return dataBaseConfigs.computeIfAbsent(facilityId, this::createDataBaseConfig);
+    }
+
+    private DataBaseConfig createDataBaseConfig(int facilityId) {
+        Properties shard = shards.get(facilityId);
+        if (shard != null) {
+            return new ShardDataBaseConfig(shard.getProperty("url"), shard.getProperty("user"),
+                    shard.getProperty("password"), DataBaseConfig.splitUrls(shard.getProperty("replicaUrls")));
+        }
+        if (facilityId == Facility.DEFAULT_ID) {
+            return new DataBaseConfig();
+        }
+        throw new IllegalArgumentException("No database configured for facility " + facilityId);
+    }
+
+    private static class ShardDataBaseConfig extends DataBaseConfig {
+
+        private final String url;
+        private final String user;
+        private final String password;
+        private final List<String> replicaUrls;
+
+        private ShardDataBaseConfig(String url, String user, String password, List<String> replicaUrls) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.replicaUrls = replicaUrls;
+        }
+
+        @Override
+        protected String getUrl() {
+            return url;
+        }
+
+        @Override
+        protected List<String> getReplicaUrls() {
+            return replicaUrls;
+        }
+
+        @Override
+        protected String getUser() {
+            return user != null ? user : super.getUser();
+        }
+
+        @Override
+        protected String getPassword() {
+            return password != null ? password : super.getPassword();
+        }
+    }
+}
@@ -2,12 +2,53 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
+    // Width of the VEHICLE_REG_NUMBER columns
+    public static final int VEHICLE_REG_NUMBER_MAX_LENGTH = 10;
+
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, TYPE, AVAILABLE from parking";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String RESERVE_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    public static final String COUNT_AVAILABLE_PARKING_SPOTS = "select count(*) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String COUNT_AVAILABLE_PARKING_SPOTS_BY_TYPE = "select TYPE, sum(AVAILABLE) from parking group by TYPE";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
     public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.ID desc";
-    public static final String GET_NB_TICKET = "select COUNT(*) from ticket where VEHICLE_REG_NUMBER = ?" ;
+    public static final String GET_OPEN_TICKET_WITH_NB_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, v.NB_VISIT from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER left join vehicle_visit v on v.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER where t.VEHICLE_REG_NUMBER=? order by t.ID desc limit 1 for update";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is null";
+    public static final String CLOSE_TICKET = "update ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER set t.PRICE=?, t.OUT_TIME=?, p.AVAILABLE = true where t.ID=? and t.OUT_TIME is null";
+    // Closed ticket columns read by the re-rating and export jobs; the recurring user flag looks for an earlier ticket
+    // of the plate in both the ticket and the ticket_archive tables
+    private static final String RECURRING_USER = "(exists(select 1 from ticket h where h.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and h.ID < t.ID)"
+            + " or exists(select 1 from ticket_archive h where h.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and h.ID < t.ID))";
+    private static final String CLOSED_TICKET_COLUMNS = "select t.ID, t.IN_TIME, t.OUT_TIME, p.TYPE, t.PRICE, " + RECURRING_USER
+            + ", t.PARKING_NUMBER, t.VEHICLE_REG_NUMBER from ";
+    public static final String GET_CLOSED_TICKETS = CLOSED_TICKET_COLUMNS + "ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME is not null order by t.ID";
+    public static final String GET_CLOSED_TICKETS_BETWEEN = CLOSED_TICKET_COLUMNS + "ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME >= ? and t.OUT_TIME < ? union all "
+            + CLOSED_TICKET_COLUMNS + "ticket_archive t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME >= ? and t.OUT_TIME < ? order by 1";
+    public static final String EXPORT_CLOSED_TICKETS = CLOSED_TICKET_COLUMNS + "ticket t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME >= ? and t.OUT_TIME < ? and t.ID > ? union all "
+            + CLOSED_TICKET_COLUMNS + "ticket_archive t join parking p on p.PARKING_NUMBER = t.PARKING_NUMBER where t.OUT_TIME >= ? and t.OUT_TIME < ? and t.ID > ? order by 1";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+    // Multi-row statements of the ticket journal drain: one VALUES group per ticket is appended to the prefix
+    public static final String SAVE_TICKETS_PREFIX = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values";
+    public static final String SAVE_TICKETS_VALUES = "(?,?,?,?,?)";
+    public static final String INCREMENT_NB_TICKETS_PREFIX = "insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT) values";
+    public static final String INCREMENT_NB_TICKETS_VALUES = "(?, 1)";
+    public static final String INCREMENT_NB_TICKETS_SUFFIX = " on duplicate key update NB_VISIT = NB_VISIT + 1";
+    public static final String GET_JOURNAL_SEQUENCE = "select LAST_SEQUENCE from ticket_journal where JOURNAL_NAME = ?";
+    public static final String SAVE_JOURNAL_SEQUENCE = "insert into ticket_journal(JOURNAL_NAME, LAST_SEQUENCE) values(?, ?) on duplicate key update LAST_SEQUENCE = values(LAST_SEQUENCE)";
+    // Archival of closed tickets, in chunks of consecutive ids, to the ticket_archive table partitioned by month
+    public static final String GET_TICKET_IDS_TO_ARCHIVE = "select ID from ticket where ID > ? and OUT_TIME < ? order by ID limit ?";
+    public static final String ARCHIVE_TICKETS = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where ID between ? and ? and OUT_TIME < ?";
+    public static final String DELETE_ARCHIVED_TICKETS = "delete from ticket where ID between ? and ? and OUT_TIME < ?";
+    public static final String GET_OLDEST_TICKET_TO_ARCHIVE = "select min(OUT_TIME) from ticket where OUT_TIME < ?";
+    public static final String GET_ARCHIVE_PARTITIONS = "select PARTITION_NAME from information_schema.partitions where TABLE_SCHEMA = database() and TABLE_NAME = 'ticket_archive' and PARTITION_NAME is not null";
+    public static final String ADD_ARCHIVE_PARTITIONS_PREFIX = "alter table ticket_archive reorganize partition p_future into (";
+    public static final String ADD_ARCHIVE_PARTITIONS_SUFFIX = "partition p_future values less than (MAXVALUE))";
+    public static final String GET_NB_TICKET = "select NB_VISIT from vehicle_visit where VEHICLE_REG_NUMBER = ?" ;
+    public static final String INCREMENT_NB_TICKET = "insert into vehicle_visit(VEHICLE_REG_NUMBER, NB_VISIT) values(?, 1) on duplicate key update NB_VISIT = NB_VISIT + 1";
+
+    public static final String GET_INDEX_NAMES = "select distinct INDEX_NAME from information_schema.statistics where TABLE_SCHEMA = database() and TABLE_NAME = ?";
 
 }
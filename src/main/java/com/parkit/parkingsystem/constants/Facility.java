@@ -0,0 +1,6 @@
+package com.parkit.parkingsystem.constants;
+
+public class Facility {
+    // Car park of a single-site deployment, stored in the database of DataBaseConfig
+    public static final int DEFAULT_ID = 1;
+}
@@ -0,0 +1,153 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parking spots kept in a memory-mapped file instead of the parking table, for single-site deployments without
+ * a database. Layout: [magic][spot count] then one 8 byte record per spot: [parking number][type ordinal]
+ * [available][2 bytes padding]. Lookups are served by a {@link ParkingSpotIndex}.
+ */
+public class MappedParkingSpotStore implements ParkingSpotRepository, Closeable {
+
+    private static final int MAGIC = 0x504b5350;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 8;
+    private static final int AVAILABLE_OFFSET = 5;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final boolean syncWrites;
+    private final Map<Integer, Integer> recordPositions = new HashMap<>();
+    private final ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+
+    // A new file is created with the given spots, an existing one keeps its own
+    public MappedParkingSpotStore(Path file, Collection<ParkingSpot> initialSpots, boolean syncWrites) throws IOException {
+        this.syncWrites = syncWrites;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        int count = created ? initialSpots.size() : readCount();
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) count * RECORD_BYTES);
+        if (created) {
+            int position = HEADER_BYTES;
+            for (ParkingSpot parkingSpot : initialSpots) {
+                buffer.putInt(position, parkingSpot.getId());
+                buffer.put(position + 4, (byte) parkingSpot.getParkingType().ordinal());
+                buffer.put(position + AVAILABLE_OFFSET, (byte) (parkingSpot.isAvailable() ? 1 : 0));
+                position += RECORD_BYTES;
+            }
+            buffer.putInt(4, count);
+            buffer.putInt(0, MAGIC);
+            buffer.force();
+        } else if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a parking spot store");
+        }
+        List<ParkingSpot> parkingSpots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int position = HEADER_BYTES + i * RECORD_BYTES;
+            ParkingSpot parkingSpot = new ParkingSpot(buffer.getInt(position),
+                    ParkingType.values()[buffer.get(position + 4)], buffer.get(position + AVAILABLE_OFFSET) == 1);
+            recordPositions.put(parkingSpot.getId(), position);
+            parkingSpots.add(parkingSpot);
+        }
+        parkingSpotIndex.load(parkingSpots);
+    }
+
+    // Same spots as the parking table of Data.sql
+    public static List<ParkingSpot> defaultLayout() {
+        return Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true),
+                new ParkingSpot(5, ParkingType.BIKE, true));
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return parkingSpotIndex.getLowestAvailable(parkingType);
+    }
+
+    @Override
+    public ParkingSpot reserveNextAvailable(ParkingType parkingType) {
+        int parkingNumber = parkingSpotIndex.claimLowestAvailable(parkingType);
+        if (parkingNumber <= 0) {
+            return null;
+        }
+        writeAvailable(parkingNumber, false);
+        return new ParkingSpot(parkingNumber, parkingType, false);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        if (!writeAvailable(parkingSpot.getId(), parkingSpot.isAvailable())) {
+            return false;
+        }
+        parkingSpotIndex.setAvailable(parkingSpot.getId(), parkingSpot.isAvailable());
+        return true;
+    }
+
+    @Override
+    public void spotReleased(ParkingSpot parkingSpot) {
+        //unlike the parking table, nothing freed the spot when the ticket was closed
+        writeAvailable(parkingSpot.getId(), true);
+        parkingSpotIndex.setAvailable(parkingSpot.getId(), true);
+    }
+
+    @Override
+    public int getAvailableSpotCount(ParkingType parkingType) {
+        return parkingSpotIndex.getAvailableCount(parkingType);
+    }
+
+    // Makes every spot without an open ticket available and every other one taken, to repair the state left by
+    // a crash between the ticket file and this one
+    public synchronized void reconcile(Collection<Integer> occupiedParkingNumbers) {
+        List<ParkingSpot> parkingSpots = new ArrayList<>(recordPositions.size());
+        for (Map.Entry<Integer, Integer> record : recordPositions.entrySet()) {
+            boolean available = !occupiedParkingNumbers.contains(record.getKey());
+            buffer.put(record.getValue() + AVAILABLE_OFFSET, (byte) (available ? 1 : 0));
+            parkingSpots.add(new ParkingSpot(record.getKey(), ParkingType.values()[buffer.get(record.getValue() + 4)],
+                    available));
+        }
+        buffer.force();
+        parkingSpotIndex.load(parkingSpots);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private int readCount() throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        return header.getInt(4);
+    }
+
+    private synchronized boolean writeAvailable(int parkingNumber, boolean available) {
+        Integer position = recordPositions.get(parkingNumber);
+        if (position == null) {
+            return false;
+        }
+        buffer.put(position + AVAILABLE_OFFSET, (byte) (available ? 1 : 0));
+        if (syncWrites) {
+            buffer.force();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,244 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Tickets kept in a memory-mapped file instead of the ticket table, for single-site deployments without a
+ * database. The file is a 64 byte header ([magic][ticket count]) followed by fixed-width 64 byte records:
+ * <pre>
+ *  0 parking number (int)     4 parking type ordinal (byte)   5 plate length (byte)   6 plate (16 bytes)
+ * 24 price in cents (long)   32 in time (epoch millis)       40 out time (epoch millis, -1 while open)
+ * </pre>
+ * The id of a ticket is its record number + 1. An in-memory index per plate, rebuilt on open, gives the latest
+ * and the open ticket of a plate and its number of tickets without scanning the file.
+ * <p>
+ * Writes land in the page cache right away and survive a crash of the process; with syncWrites each write is
+ * also forced to disk, which survives a power loss at the cost of a disk flush per write.
+ */
+public class MappedTicketStore implements TicketRepository, Closeable {
+
+    private static final Logger logger = LogManager.getLogger("MappedTicketStore");
+
+    private static final int MAGIC = 0x504b544b;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 64;
+    private static final int MAX_PLATE_BYTES = 16;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final long OPEN = -1;
+
+    private static final int TYPE_OFFSET = 4;
+    private static final int PLATE_LENGTH_OFFSET = 5;
+    private static final int PLATE_OFFSET = 6;
+    private static final int PRICE_OFFSET = 24;
+    private static final int IN_TIME_OFFSET = 32;
+    private static final int OUT_TIME_OFFSET = 40;
+
+    private final FileChannel channel;
+    private final boolean syncWrites;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private final Map<String, PlateTickets> plateIndex = new HashMap<>();
+
+    public MappedTicketStore(Path file, boolean syncWrites) throws IOException {
+        this.syncWrites = syncWrites;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        long existingRecords = created ? 0 : (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        map((int) Math.max(INITIAL_CAPACITY, existingRecords));
+        if (created) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 0);
+            buffer.force();
+        } else if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a ticket store");
+        }
+        count = buffer.getInt(4);
+        for (int record = 0; record < count; record++) {
+            index(record, readPlate(position(record)), buffer.getLong(position(record) + OUT_TIME_OFFSET) == OPEN);
+        }
+        logger.info("Opened ticket store " + file + " with " + count + " tickets");
+    }
+
+    @Override
+    public synchronized boolean saveTicket(Ticket ticket) {
+        byte[] plate = ticket.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+        if (plate.length > MAX_PLATE_BYTES) {
+            logger.error("Vehicle registration number longer than " + MAX_PLATE_BYTES + " bytes: "
+                    + ticket.getVehicleRegNumber());
+            return false;
+        }
+        try {
+            if (count == capacity) {
+                map(capacity * 2);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to grow the ticket store", e);
+            return false;
+        }
+        int record = count;
+        int position = position(record);
+        buffer.putInt(position, ticket.getParkingSpot().getId());
+        buffer.put(position + TYPE_OFFSET, (byte) ticket.getParkingSpot().getParkingType().ordinal());
+        buffer.put(position + PLATE_LENGTH_OFFSET, (byte) plate.length);
+        for (int i = 0; i < MAX_PLATE_BYTES; i++) {
+            buffer.put(position + PLATE_OFFSET + i, i < plate.length ? plate[i] : 0);
+        }
+        buffer.putLong(position + PRICE_OFFSET, ticket.getPriceInCents());
+        buffer.putLong(position + IN_TIME_OFFSET, ticket.getInTime().getTime());
+        buffer.putLong(position + OUT_TIME_OFFSET, ticket.getOutTime() == null ? OPEN : ticket.getOutTime().getTime());
+        //the record only counts once it is complete
+        count++;
+        buffer.putInt(4, count);
+        sync();
+        index(record, ticket.getVehicleRegNumber(), ticket.getOutTime() == null);
+        ticket.setId(record + 1);
+        return true;
+    }
+
+    @Override
+    public synchronized Ticket getTicket(String vehicleRegNumber) {
+        PlateTickets plateTickets = plateIndex.get(vehicleRegNumber);
+        return plateTickets == null ? null : readTicket(plateTickets.latestRecord, vehicleRegNumber);
+    }
+
+    @Override
+    public synchronized boolean updateTicket(Ticket ticket) {
+        int record = ticket.getId() - 1;
+        if (record < 0 || record >= count) {
+            return false;
+        }
+        writeExit(record, ticket);
+        PlateTickets plateTickets = plateIndex.get(ticket.getVehicleRegNumber());
+        if (ticket.getOutTime() != null && plateTickets != null && plateTickets.openRecord == record) {
+            plateTickets.openRecord = -1;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int getNbTicket(String vehicleRegNumber) {
+        PlateTickets plateTickets = plateIndex.get(vehicleRegNumber);
+        return plateTickets == null ? 0 : plateTickets.ticketCount;
+    }
+
+    @Override
+    public synchronized Ticket closeTicket(String vehicleRegNumber, Date outTime,
+                                           BiConsumer<Ticket, Integer> fareCalculation) {
+        PlateTickets plateTickets = plateIndex.get(vehicleRegNumber);
+        if (plateTickets == null || plateTickets.openRecord < 0) {
+            return null;
+        }
+        Ticket ticket = readTicket(plateTickets.openRecord, vehicleRegNumber);
+        ticket.setOutTime(outTime);
+        fareCalculation.accept(ticket, plateTickets.ticketCount);
+        writeExit(plateTickets.openRecord, ticket);
+        plateTickets.openRecord = -1;
+        ticket.getParkingSpot().setAvailable(true);
+        return ticket;
+    }
+
+    // Spots of the tickets still open, to rebuild the parking spot availability on startup
+    public synchronized Set<Integer> getOpenParkingNumbers() {
+        Set<Integer> parkingNumbers = new HashSet<>();
+        for (PlateTickets plateTickets : plateIndex.values()) {
+            if (plateTickets.openRecord >= 0) {
+                parkingNumbers.add(buffer.getInt(position(plateTickets.openRecord)));
+            }
+        }
+        return parkingNumbers;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void map(int newCapacity) throws IOException {
+        long size = HEADER_BYTES + (long) newCapacity * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Ticket store is full");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        capacity = newCapacity;
+    }
+
+    private static int position(int record) {
+        return HEADER_BYTES + record * RECORD_BYTES;
+    }
+
+    private void index(int record, String vehicleRegNumber, boolean open) {
+        PlateTickets plateTickets = plateIndex.get(vehicleRegNumber);
+        if (plateTickets == null) {
+            plateTickets = new PlateTickets();
+            plateIndex.put(vehicleRegNumber, plateTickets);
+        }
+        plateTickets.latestRecord = record;
+        plateTickets.ticketCount++;
+        if (open) {
+            plateTickets.openRecord = record;
+        }
+    }
+
+    private String readPlate(int position) {
+        byte[] plate = new byte[buffer.get(position + PLATE_LENGTH_OFFSET)];
+        for (int i = 0; i < plate.length; i++) {
+            plate[i] = buffer.get(position + PLATE_OFFSET + i);
+        }
+        return new String(plate, StandardCharsets.UTF_8);
+    }
+
+    private Ticket readTicket(int record, String vehicleRegNumber) {
+        int position = position(record);
+        Ticket ticket = new Ticket();
+        ticket.setId(record + 1);
+        ticket.setParkingSpot(new ParkingSpot(buffer.getInt(position),
+                ParkingType.values()[buffer.get(position + TYPE_OFFSET)], false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPriceInCents(buffer.getLong(position + PRICE_OFFSET));
+        ticket.setInTime(new Date(buffer.getLong(position + IN_TIME_OFFSET)));
+        long outTime = buffer.getLong(position + OUT_TIME_OFFSET);
+        ticket.setOutTime(outTime == OPEN ? null : new Date(outTime));
+        return ticket;
+    }
+
+    private void writeExit(int record, Ticket ticket) {
+        int position = position(record);
+        buffer.putLong(position + PRICE_OFFSET, ticket.getPriceInCents());
+        buffer.putLong(position + OUT_TIME_OFFSET, ticket.getOutTime() == null ? OPEN : ticket.getOutTime().getTime());
+        sync();
+    }
+
+    private void sync() {
+        if (syncWrites) {
+            buffer.force();
+        }
+    }
+
+    private static class PlateTickets {
+        private int latestRecord;
+        private int openRecord = -1;
+        private int ticketCount;
+    }
+}
@@ -0,0 +1,74 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-through cache of the open tickets (no out time yet) keyed by vehicle registration number.
+ * There are never more open tickets than parking spots, so the whole set is kept in memory.
+ * Tickets are copied in and out so callers can never modify a cached entry.
+ */
+public class OpenTicketCache {
+
+    private final Map<String, Ticket> openTickets = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public void load(Collection<Ticket> tickets) {
+        openTickets.clear();
+        for (Ticket ticket : tickets) {
+            put(ticket);
+        }
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public Ticket get(String vehicleRegNumber) {
+        Ticket ticket = openTickets.get(vehicleRegNumber);
+        return ticket == null ? null : copy(ticket);
+    }
+
+    public void put(Ticket ticket) {
+        openTickets.put(ticket.getVehicleRegNumber(), copy(ticket));
+    }
+
+    // Gives the cached ticket of the plate the id generated when the ticket journal inserted it
+    public void assignId(Ticket ticket) {
+        openTickets.computeIfPresent(ticket.getVehicleRegNumber(), (vehicleRegNumber, cached) ->
+                cached.getId() == 0 && cached.getInTime().equals(ticket.getInTime()) ? copy(ticket) : cached);
+    }
+
+    public void evict(String vehicleRegNumber) {
+        openTickets.remove(vehicleRegNumber);
+    }
+
+    // Drops the cached ticket of the plate only if it is the given ticket, not inserted yet
+    public void evictUnsaved(Ticket ticket) {
+        openTickets.computeIfPresent(ticket.getVehicleRegNumber(), (vehicleRegNumber, cached) ->
+                cached.getId() == 0 && cached.getInTime().equals(ticket.getInTime()) ? null : cached);
+    }
+
+    public int size() {
+        return openTickets.size();
+    }
+
+    static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        copy.setParkingSpot(new ParkingSpot(parkingSpot.getFacilityId(), parkingSpot.getId(),
+                parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+        copy.setId(ticket.getId());
+        copy.setFacilityId(ticket.getFacilityId());
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime());
+        copy.setOutTime(ticket.getOutTime());
+        return copy;
+    }
+}
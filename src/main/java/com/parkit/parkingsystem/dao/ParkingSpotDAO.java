@@ -2,7 +2,10 @@ package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.Facility;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,34 +13,152 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
+    private static final OperationMetrics GET_NEXT_AVAILABLE_SLOT_METRICS = Metrics.operation("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationMetrics RESERVE_NEXT_AVAILABLE_METRICS = Metrics.operation("ParkingSpotDAO.reserveNextAvailable");
+    private static final OperationMetrics GET_AVAILABLE_SPOT_COUNT_METRICS = Metrics.operation("ParkingSpotDAO.getAvailableSpotCount");
+    private static final OperationMetrics UPDATE_PARKING_METRICS = Metrics.operation("ParkingSpotDAO.updateParking");
+    private static final OperationMetrics LOAD_AVAILABILITY_INDEX_METRICS = Metrics.operation("ParkingSpotDAO.loadAvailabilityIndex");
+    private static final OperationMetrics RECONCILE_AVAILABILITY_METRICS = Metrics.operation("ParkingSpotDAO.reconcileAvailability");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex();
+
+    public int facilityId = Facility.DEFAULT_ID;
+
+    public ParkingSpotDAO() {
+    }
+
+    // Spots of one car park, in the database DataBaseConfig.forFacility maps it to
+    public ParkingSpotDAO(int facilityId) {
+        this.facilityId = facilityId;
+        this.dataBaseConfig = DataBaseConfig.forFacility(facilityId);
+    }
+
+    @Override
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType){
+        long start = System.nanoTime();
+        if(parkingSpotIndex.isLoaded() || loadAvailabilityIndex()){
+            int parkingNumber = parkingSpotIndex.getLowestAvailable(parkingType);
+            GET_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+            return parkingNumber;
+        }
         Connection con = null;
         int result=-1;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+            result = selectNextAvailableSlot(con, parkingType);
+        }catch (Exception ex){
+            GET_NEXT_AVAILABLE_SLOT_METRICS.recordFailure();
+            logger.error("Error fetching next available slot",ex);
+        }finally {
+            GET_NEXT_AVAILABLE_SLOT_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+        return result;
+    }
+
+    @Override
+    public ParkingSpot reserveNextAvailable(ParkingType parkingType){
+        long start = System.nanoTime();
+        //claim the lowest free spot with a conditional update so that concurrent entries never get the same spot
+        boolean useIndex = parkingSpotIndex.isLoaded() || loadAvailabilityIndex();
+        Connection con = null;
+        int claimedFromIndex = 0;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.RESERVE_PARKING_SPOT);
+            while(true){
+                int parkingNumber;
+                if(useIndex){
+                    parkingNumber = parkingSpotIndex.claimLowestAvailable(parkingType);
+                    claimedFromIndex = parkingNumber;
+                }else{
+                    parkingNumber = selectNextAvailableSlot(con, parkingType);
+                }
+                if(parkingNumber <= 0){
+                    dataBaseConfig.closePreparedStatement(ps);
+                    return null;
+                }
+                ps.setInt(1, parkingNumber);
+                int updateRowCount = ps.executeUpdate();
+                claimedFromIndex = 0;
+                if(updateRowCount == 1){
+                    dataBaseConfig.closePreparedStatement(ps);
+                    return new ParkingSpot(facilityId, parkingNumber, parkingType, false);
+                }
+                //spot was taken outside of this process in the meantime, try the next one
+            }
+        }catch (Exception ex){
+            RESERVE_NEXT_AVAILABLE_METRICS.recordFailure();
+            logger.error("Error reserving next available slot",ex);
+            if(claimedFromIndex > 0){
+                parkingSpotIndex.setAvailable(claimedFromIndex, true);
+            }
+            return null;
+        }finally {
+            RESERVE_NEXT_AVAILABLE_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
+    public int getAvailableSpotCount(ParkingType parkingType){
+        long start = System.nanoTime();
+        if(parkingSpotIndex.isLoaded() || loadAvailabilityIndex()){
+            int availableCount = parkingSpotIndex.getAvailableCount(parkingType);
+            GET_AVAILABLE_SPOT_COUNT_METRICS.record(start);
+            return availableCount;
+        }
+        Connection con = null;
+        int result=-1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS);
             ps.setString(1, parkingType.toString());
             ResultSet rs = ps.executeQuery();
             if(rs.next()){
-                result = rs.getInt(1);;
+                result = rs.getInt(1);
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
-            logger.error("Error fetching next available slot",ex);
+            GET_AVAILABLE_SPOT_COUNT_METRICS.recordFailure();
+            logger.error("Error counting available slots",ex);
         }finally {
+            GET_AVAILABLE_SPOT_COUNT_METRICS.record(start);
             dataBaseConfig.closeConnection(con);
         }
         return result;
     }
 
+    private int selectNextAvailableSlot(Connection con, ParkingType parkingType) throws Exception {
+        int result = 0;
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+        ps.setString(1, parkingType.toString());
+        ResultSet rs = ps.executeQuery();
+        if(rs.next()){
+            result = rs.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return result;
+    }
+
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot){
+        long start = System.nanoTime();
         //update the availability fo that parking slot
         Connection con = null;
         try {
@@ -47,13 +168,103 @@ public class ParkingSpotDAO {
             ps.setInt(2, parkingSpot.getId());
             int updateRowCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
+            if(updateRowCount == 1){
+                parkingSpotIndex.setAvailable(parkingSpot.getId(), parkingSpot.isAvailable());
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
+            UPDATE_PARKING_METRICS.recordFailure();
             logger.error("Error updating parking info",ex);
             return false;
         }finally {
+            UPDATE_PARKING_METRICS.record(start);
             dataBaseConfig.closeConnection(con);
         }
     }
 
+    @Override
+    public void spotReleased(ParkingSpot parkingSpot){
+        //the spot was freed in the database by another DAO (exit transaction), only the index needs the update
+        parkingSpotIndex.setAvailable(parkingSpot.getId(), true);
+    }
+
+    public boolean loadAvailabilityIndex(){
+        long start = System.nanoTime();
+        //read every parking spot once so that next available slot lookups are served from memory
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            while(rs.next()){
+                parkingSpots.add(new ParkingSpot(facilityId, rs.getInt(1), ParkingType.valueOf(rs.getString(2)), rs.getBoolean(3)));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            parkingSpotIndex.load(parkingSpots);
+            logger.info("Loaded availability index for " + parkingSpots.size() + " parking spots");
+            return true;
+        }catch (Exception ex){
+            LOAD_AVAILABILITY_INDEX_METRICS.recordFailure();
+            logger.error("Error loading parking spot availability index",ex);
+            return false;
+        }finally {
+            LOAD_AVAILABILITY_INDEX_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Compares the availability counts of the index with the parking table, and reloads the index when they differ
+    // because another process or a manual fix changed the table. Returns false when the check itself failed.
+    public boolean reconcileAvailability(){
+        long start = System.nanoTime();
+        if(!parkingSpotIndex.isLoaded()){
+            return loadAvailabilityIndex();
+        }
+        Connection con = null;
+        boolean drift = false;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS_BY_TYPE);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                ParkingType parkingType = ParkingType.valueOf(rs.getString(1));
+                int available = rs.getInt(2);
+                if(available != parkingSpotIndex.getAvailableCount(parkingType)){
+                    logger.warn(parkingType + " availability drifted: " + parkingSpotIndex.getAvailableCount(parkingType)
+                            + " in memory, " + available + " in the database");
+                    drift = true;
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            RECONCILE_AVAILABILITY_METRICS.recordFailure();
+            logger.error("Error reconciling parking spot availability",ex);
+            return false;
+        }finally {
+            RECONCILE_AVAILABILITY_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+        return !drift || loadAvailabilityIndex();
+    }
+
+    // Async variants: the same calls run on the database I/O executor so that independent lookups can overlap
+
+    public CompletableFuture<Integer> getNextAvailableSlotAsync(ParkingType parkingType){
+        return CompletableFuture.supplyAsync(() -> getNextAvailableSlot(parkingType), dataBaseConfig.getIoExecutor());
+    }
+
+    public CompletableFuture<ParkingSpot> reserveNextAvailableAsync(ParkingType parkingType){
+        return CompletableFuture.supplyAsync(() -> reserveNextAvailable(parkingType), dataBaseConfig.getIoExecutor());
+    }
+
+    public CompletableFuture<Boolean> updateParkingAsync(ParkingSpot parkingSpot){
+        return CompletableFuture.supplyAsync(() -> updateParking(parkingSpot), dataBaseConfig.getIoExecutor());
+    }
+
+    public CompletableFuture<Integer> getAvailableSpotCountAsync(ParkingType parkingType){
+        return CompletableFuture.supplyAsync(() -> getAvailableSpotCount(parkingType), dataBaseConfig.getIoExecutor());
+    }
 }
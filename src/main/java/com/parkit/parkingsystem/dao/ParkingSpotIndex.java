@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * In-memory view of the free parking spots, one bitset per parking type where bit n is set
+ * when spot number n is available. Lookups of the lowest free spot never touch the database.
+ * <p>
+ * Each change of a bit also moves an atomic counter of free spots per type, so that availability displays polling
+ * the counts read a volatile int instead of taking the lock held by the gates.
+ */
+public class ParkingSpotIndex {
+
+    private final BitSet[] availableSpots = new BitSet[ParkingType.values().length];
+    private final Map<Integer, ParkingType> spotTypes = new HashMap<>();
+    private final AtomicIntegerArray availableCounts = new AtomicIntegerArray(ParkingType.values().length);
+    private final AtomicIntegerArray spotCounts = new AtomicIntegerArray(ParkingType.values().length);
+    private volatile boolean loaded;
+
+    public ParkingSpotIndex() {
+        for (int i = 0; i < availableSpots.length; i++) {
+            availableSpots[i] = new BitSet();
+        }
+    }
+
+    public synchronized void load(Collection<ParkingSpot> parkingSpots) {
+        for (BitSet bitSet : availableSpots) {
+            bitSet.clear();
+        }
+        spotTypes.clear();
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            spotTypes.put(parkingSpot.getId(), parkingSpot.getParkingType());
+            availableSpots[parkingSpot.getParkingType().ordinal()].set(parkingSpot.getId(), parkingSpot.isAvailable());
+        }
+        //counted first and published with one write per counter, so that displays never see a partial count
+        int[] spots = new int[availableSpots.length];
+        for (ParkingType parkingType : spotTypes.values()) {
+            spots[parkingType.ordinal()]++;
+        }
+        for (int i = 0; i < availableSpots.length; i++) {
+            spotCounts.set(i, spots[i]);
+            availableCounts.set(i, availableSpots[i].cardinality());
+        }
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Returns 0 when no spot of that type is free, like the min(PARKING_NUMBER) query did
+    public synchronized int getLowestAvailable(ParkingType parkingType) {
+        int parkingNumber = availableSpots[parkingType.ordinal()].nextSetBit(0);
+        return parkingNumber < 0 ? 0 : parkingNumber;
+    }
+
+    // Takes the lowest free spot out of the index in one step so two callers can never get the same one
+    public synchronized int claimLowestAvailable(ParkingType parkingType) {
+        BitSet bitSet = availableSpots[parkingType.ordinal()];
+        int parkingNumber = bitSet.nextSetBit(0);
+        if (parkingNumber < 0) {
+            return 0;
+        }
+        bitSet.clear(parkingNumber);
+        availableCounts.decrementAndGet(parkingType.ordinal());
+        return parkingNumber;
+    }
+
+    // Lock-free, may be one gate event behind the bitsets
+    public int getAvailableCount(ParkingType parkingType) {
+        return availableCounts.get(parkingType.ordinal());
+    }
+
+    public int getSpotCount(ParkingType parkingType) {
+        return spotCounts.get(parkingType.ordinal());
+    }
+
+    public int getOccupiedCount(ParkingType parkingType) {
+        return getSpotCount(parkingType) - getAvailableCount(parkingType);
+    }
+
+    public synchronized void setAvailable(int parkingNumber, boolean available) {
+        ParkingType parkingType = spotTypes.get(parkingNumber);
+        if (parkingType != null) {
+            BitSet bitSet = availableSpots[parkingType.ordinal()];
+            if (bitSet.get(parkingNumber) != available) {
+                bitSet.set(parkingNumber, available);
+                availableCounts.addAndGet(parkingType.ordinal(), available ? 1 : -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.Facility;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Parking spot storage used by ParkingService, implemented by ParkingSpotDAO (MySQL) and MappedParkingSpotStore
+ * (local files).
+ */
+public interface ParkingSpotRepository {
+
+    // Lowest free spot number of that type without taking it, 0 if none
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    // Takes the lowest free spot of that type, null if none
+    ParkingSpot reserveNextAvailable(ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    // Called once closeTicket freed the spot of the closed ticket
+    void spotReleased(ParkingSpot parkingSpot);
+
+    int getAvailableSpotCount(ParkingType parkingType);
+
+    // Car park whose spots or tickets this repository holds
+    default int getFacilityId() {
+        return Facility.DEFAULT_ID;
+    }
+}
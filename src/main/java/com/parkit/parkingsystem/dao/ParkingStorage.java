@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.Facility;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ticket and parking spot repositories of one deployment: the MySQL DAOs by default, or memory-mapped
+ * files with -Dparkit.storage=mapped (directory set by -Dparkit.storage.dir).
+ * <p>
+ * The deployment serves the car park set by -Dparkit.facility (1 by default). With MySQL its tables are in the
+ * database the -Dparkit.shards map gives it; the memory-mapped files only hold the default car park.
+ * <p>
+ * With MySQL, the in-memory availability counts are checked against the parking table every
+ * -Dparkit.occupancy.reconcileSeconds (30 by default, 0 to disable), since other processes may move spots.
+ */
+public class ParkingStorage implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("ParkingStorage");
+
+    private final TicketRepository ticketRepository;
+    private final ParkingSpotRepository parkingSpotRepository;
+    private final Runnable warmUp;
+    private final List<Closeable> resources;
+
+    private ParkingStorage(TicketRepository ticketRepository, ParkingSpotRepository parkingSpotRepository,
+                           Runnable warmUp, List<Closeable> resources) {
+        this.ticketRepository = ticketRepository;
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.warmUp = warmUp;
+        this.resources = resources;
+    }
+
+    public static ParkingStorage fromSystemProperties() throws IOException {
+        int facilityId = Integer.getInteger("parkit.facility", Facility.DEFAULT_ID);
+        if ("mapped".equals(System.getProperty("parkit.storage"))) {
+            if (facilityId != Facility.DEFAULT_ID) {
+                throw new IllegalArgumentException("Memory-mapped storage only holds facility " + Facility.DEFAULT_ID);
+            }
+            return openMappedFiles(Paths.get(System.getProperty("parkit.storage.dir", "parkit-data")),
+                    Boolean.getBoolean("parkit.storage.syncWrites"));
+        }
+        return openDataBase(facilityId);
+    }
+
+    public static ParkingStorage openDataBase(int facilityId) {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO(facilityId);
+        TicketDAO ticketDAO = new TicketDAO(facilityId);
+        ticketDAO.ticketJournal = TicketJournal.fromSystemProperties(ticketDAO);
+        List<Closeable> resources = new ArrayList<>();
+        if (ticketDAO.ticketJournal != null) {
+            resources.add(ticketDAO.ticketJournal);
+        }
+        long reconcileSeconds = Long.getLong("parkit.occupancy.reconcileSeconds", 30);
+        if (reconcileSeconds > 0) {
+            ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "occupancy-reconciler-" + facilityId);
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciler.scheduleWithFixedDelay(parkingSpotDAO::reconcileAvailability, reconcileSeconds,
+                    reconcileSeconds, TimeUnit.SECONDS);
+            resources.add(reconciler::shutdownNow);
+        }
+        return new ParkingStorage(ticketDAO, parkingSpotDAO, () -> {
+            parkingSpotDAO.loadAvailabilityIndex();
+            ticketDAO.loadOpenTickets();
+        }, resources);
+    }
+
+    public static ParkingStorage openMappedFiles(Path directory, boolean syncWrites) throws IOException {
+        Files.createDirectories(directory);
+        MappedTicketStore ticketStore = new MappedTicketStore(directory.resolve("tickets.dat"), syncWrites);
+        MappedParkingSpotStore parkingSpotStore = new MappedParkingSpotStore(directory.resolve("parking.dat"),
+                MappedParkingSpotStore.defaultLayout(), syncWrites);
+        //the two files are not written atomically together, the open tickets are the reference after a crash
+        parkingSpotStore.reconcile(ticketStore.getOpenParkingNumbers());
+        logger.info("Using memory-mapped storage in " + directory.toAbsolutePath());
+        List<Closeable> resources = new ArrayList<>();
+        resources.add(ticketStore);
+        resources.add(parkingSpotStore);
+        return new ParkingStorage(ticketStore, parkingSpotStore, () -> { }, resources);
+    }
+
+    public TicketRepository getTicketRepository() {
+        return ticketRepository;
+    }
+
+    public ParkingSpotRepository getParkingSpotRepository() {
+        return parkingSpotRepository;
+    }
+
+    // Loads the in-memory indexes up front instead of on the first gate event
+    public void warmUp() {
+        warmUp.run();
+    }
+
+    @Override
+    public void close() {
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                logger.error("Error closing storage", e);
+            }
+        }
+    }
+}
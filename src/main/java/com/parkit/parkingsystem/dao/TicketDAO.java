@@ -2,28 +2,99 @@ package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.Facility;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketBatch;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public OpenTicketCache openTicketCache = new OpenTicketCache();
+
+    // Write-behind mode when set: new tickets go to the journal and reach the database in batches
+    public TicketJournal ticketJournal;
+
+    public int facilityId = Facility.DEFAULT_ID;
+
+    private static final long JOURNAL_FLUSH_TIMEOUT_MILLIS = 5000;
+    private static final int CLOSED_TICKETS_FETCH_SIZE = 10000;
+    private static final OperationMetrics SAVE_TICKET_METRICS = Metrics.operation("TicketDAO.saveTicket");
+    private static final OperationMetrics GET_TICKET_METRICS = Metrics.operation("TicketDAO.getTicket");
+    private static final OperationMetrics UPDATE_TICKET_METRICS = Metrics.operation("TicketDAO.updateTicket");
+    private static final OperationMetrics GET_NB_TICKET_METRICS = Metrics.operation("TicketDAO.getNbTicket");
+    private static final OperationMetrics CLOSE_TICKET_METRICS = Metrics.operation("TicketDAO.closeTicket");
+    private static final OperationMetrics LOAD_OPEN_TICKETS_METRICS = Metrics.operation("TicketDAO.loadOpenTickets");
+    private static final OperationMetrics STREAM_CLOSED_TICKET_BATCHES_METRICS = Metrics.operation("TicketDAO.streamClosedTicketBatches");
+    private static final OperationMetrics LOAD_CLOSED_TICKETS_METRICS = Metrics.operation("TicketDAO.loadClosedTickets");
+    private static final OperationMetrics UPDATE_TICKET_PRICES_METRICS = Metrics.operation("TicketDAO.updateTicketPrices");
+    private static final OperationMetrics SAVE_JOURNALED_TICKETS_METRICS = Metrics.operation("TicketDAO.saveJournaledTickets");
+    private static final OperationMetrics GET_JOURNAL_SEQUENCE_METRICS = Metrics.operation("TicketDAO.getJournalSequence");
+    private static final OperationMetrics GET_TICKET_IDS_TO_ARCHIVE_METRICS = Metrics.operation("TicketDAO.getTicketIdsToArchive");
+    private static final OperationMetrics ARCHIVE_TICKETS_METRICS = Metrics.operation("TicketDAO.archiveTickets");
+    private static final OperationMetrics ADD_ARCHIVE_PARTITIONS_METRICS = Metrics.operation("TicketDAO.addArchivePartitions");
+    // Monthly partitions of ticket_archive are named p<yyyyMM>
+    private static final Pattern ARCHIVE_PARTITION_NAME = Pattern.compile("p(\\d{6})");
+    private static final DateTimeFormatter ARCHIVE_PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Results of saveJournaledTicket, 0 when it failed for a reason that can go away, such as a lost connection
+    public static final int JOURNALED_TICKET_SAVED = 1;
+    public static final int JOURNALED_TICKET_REJECTED = 2;
+
+    public TicketDAO() {
+    }
+
+    // Tickets of one car park, in the database DataBaseConfig.forFacility maps it to
+    public TicketDAO(int facilityId) {
+        this.facilityId = facilityId;
+        this.dataBaseConfig = DataBaseConfig.forFacility(facilityId);
+    }
+
+    @Override
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    @Override
     public boolean saveTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        if (ticketJournal != null) {
+            boolean journaled = journalTicket(ticket);
+            SAVE_TICKET_METRICS.record(start);
+            return journaled;
+        }
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            con.setAutoCommit(false);
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
             ps.setInt(1, ticket.getId());
             ps.setInt(1, ticket.getParkingSpot().getId());
@@ -31,46 +102,111 @@ public class TicketDAO {
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
-            return ps.execute();
+            ps.execute();
+            ResultSet generatedKeys = ps.getGeneratedKeys();
+            if (generatedKeys.next()) {
+                ticket.setId(generatedKeys.getInt(1));
+            }
+            dataBaseConfig.closeResultSet(generatedKeys);
+            dataBaseConfig.closePreparedStatement(ps);
+            //keep the per-plate ticket counter in step with the ticket table
+            ps = con.prepareStatement(DBConstants.INCREMENT_NB_TICKET);
+            ps.setString(1, ticket.getVehicleRegNumber());
+            ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+            if (ticket.getOutTime() == null) {
+                openTicketCache.put(ticket);
+            }
+            return true;
         } catch (Exception ex) {
-            logger.error("Error fetching next available slot", ex);
+            SAVE_TICKET_METRICS.recordFailure();
+            logger.error("Error saving ticket", ex);
+            dataBaseConfig.rollback(con);
             return false;
         } finally {
+            SAVE_TICKET_METRICS.record(start);
             dataBaseConfig.closeConnection(con);
         }
     }
 
+    private boolean journalTicket(Ticket ticket) {
+        //cached first so that the journal drain finds the entry to give its generated id to
+        boolean open = ticket.getOutTime() == null;
+        if (open) {
+            openTicketCache.put(ticket);
+        }
+        if (ticketJournal.append(OpenTicketCache.copy(ticket))) {
+            return true;
+        }
+        if (open) {
+            openTicketCache.evict(ticket.getVehicleRegNumber());
+        }
+        return false;
+    }
+
+    // Before reading tickets from the database in write-behind mode, wait for the journal to catch up
+    private void flushTicketJournal() {
+        if (ticketJournal != null && !ticketJournal.flush(JOURNAL_FLUSH_TIMEOUT_MILLIS)) {
+            logger.warn("Ticket journal still has " + ticketJournal.getPendingCount() + " tickets to save");
+        }
+    }
+
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        //an open ticket is always the latest ticket of its plate
+        Ticket ticket = openTicketCache.get(vehicleRegNumber);
+        if (ticket != null) {
+            GET_TICKET_METRICS.record(start);
+            return ticket;
+        }
+        flushTicketJournal();
         Connection con = null;
-        Ticket ticket = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
-            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-            ps.setString(1, vehicleRegNumber);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
-            }
-            dataBaseConfig.closeResultSet(rs);
-            dataBaseConfig.closePreparedStatement(ps);
+            ticket = selectTicket(con, DBConstants.GET_TICKET, vehicleRegNumber);
         } catch (Exception ex) {
+            GET_TICKET_METRICS.recordFailure();
             logger.error("Error fetching next available slot", ex);
             ticket = null;
         } finally {
+            GET_TICKET_METRICS.record(start);
             dataBaseConfig.closeConnection(con);
         }
         return ticket;
     }
 
+    private Ticket selectTicket(Connection con, String query, String vehicleRegNumber) throws Exception {
+        Ticket ticket = null;
+        PreparedStatement ps = con.prepareStatement(query);
+        //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+        ps.setString(1, vehicleRegNumber);
+        ResultSet rs = ps.executeQuery();
+        if (rs.next()) {
+            ticket = readTicket(rs, vehicleRegNumber);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return ticket;
+    }
+
+    private Ticket readTicket(ResultSet rs, String vehicleRegNumber) throws Exception {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = new ParkingSpot(facilityId, rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
+        ticket.setFacilityId(facilityId);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(rs.getDouble(3));
+        ticket.setInTime(rs.getTimestamp(4));
+        ticket.setOutTime(rs.getTimestamp(5));
+        return ticket;
+    }
+
+    @Override
     public boolean updateTicket(Ticket ticket) {
+        long start = System.nanoTime();
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
@@ -79,37 +215,593 @@ public class TicketDAO {
             ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
             ps.setInt(3, ticket.getId());
             ps.execute();
+            dataBaseConfig.closePreparedStatement(ps);
+            openTicketCache.evict(ticket.getVehicleRegNumber());
             return true;
         } catch (Exception ex) {
+            UPDATE_TICKET_METRICS.recordFailure();
             logger.error("Error saving ticket info", ex);
         } finally {
+            UPDATE_TICKET_METRICS.record(start);
             dataBaseConfig.closeConnection(con);
         }
         return false;
     }
 
+    // Read from a replica when there is one, so a visit that just ended may not be counted yet. The exit discount
+    // does not depend on it: closeTicket counts the tickets again on the primary.
+    @Override
     public int getNbTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
         Connection con = null;
         int nbTicket = 0;
+        try {
+            con = dataBaseConfig.getReadConnection();
+            nbTicket = selectNbTicket(con, vehicleRegNumber);
+        } catch (Exception ex) {
+            GET_NB_TICKET_METRICS.recordFailure();
+            logger.error("Error getting number of tickets", ex);
+
+        } finally {
+            GET_NB_TICKET_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+        return nbTicket;
+    }
+
+    private int selectNbTicket(Connection con, String vehicleRegNumber) throws Exception {
+        int nbTicket = 0;
+        PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKET);
+        ps.setString(1, vehicleRegNumber);
+        ResultSet rs = ps.executeQuery();
+        if (rs.next()) {
+            nbTicket = rs.getInt(1);
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return nbTicket;
+    }
+
+    // Whole exit in one transaction: the open ticket comes from the cache, or is locked and read together with
+    // the number of tickets of the plate in one statement, priced by the caller, then closed with its spot freed
+    // by a single statement. A stale cached ticket (closed elsewhere, or not inserted by the journal yet) falls back
+    // to the locked read. Returns the closed ticket, or null if there is no open ticket for that plate or the exit
+    // failed.
+    @Override
+    public Ticket closeTicket(String vehicleRegNumber, Date outTime, BiConsumer<Ticket, Integer> fareCalculation) {
+        long start = System.nanoTime();
+        if (!openTicketCache.isLoaded()) {
+            loadOpenTickets();
+        }
+        if (ticketJournal != null) {
+            Ticket cached = openTicketCache.get(vehicleRegNumber);
+            if (cached == null || cached.getId() == 0) {
+                //not inserted by the journal yet, its id is needed to close it
+                flushTicketJournal();
+            }
+        }
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            Ticket ticket = openTicketCache.get(vehicleRegNumber);
+            if (ticket != null) {
+                ticket = closeOpenTicket(con, ticket, selectNbTicket(con, vehicleRegNumber), outTime, fareCalculation);
+                if (ticket == null) {
+                    //the cached copy was stale, the plate may have re-entered through another node since
+                    openTicketCache.evict(vehicleRegNumber);
+                }
+            }
+            if (ticket == null) {
+                PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKET_WITH_NB_TICKET);
+                ps.setString(1, vehicleRegNumber);
+                ResultSet rs = ps.executeQuery();
+                Ticket openTicket = null;
+                int nbTicket = 0;
+                if (rs.next()) {
+                    openTicket = readTicket(rs, vehicleRegNumber);
+                    nbTicket = rs.getInt(7);
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+                if (openTicket != null && openTicket.getOutTime() == null) {
+                    ticket = closeOpenTicket(con, openTicket, nbTicket, outTime, fareCalculation);
+                }
+            }
+            if (ticket == null) {
+                dataBaseConfig.rollback(con);
+                return null;
+            }
+            con.commit();
+            openTicketCache.evict(vehicleRegNumber);
+            ticket.getParkingSpot().setAvailable(true);
+            return ticket;
+        } catch (Exception ex) {
+            CLOSE_TICKET_METRICS.recordFailure();
+            logger.error("Error closing ticket", ex);
+            dataBaseConfig.rollback(con);
+            return null;
+        } finally {
+            CLOSE_TICKET_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Prices the ticket and closes it with its spot freed, null when it is no longer open in the database
+    private Ticket closeOpenTicket(Connection con, Ticket ticket, int nbTicket, Date outTime,
+                                   BiConsumer<Ticket, Integer> fareCalculation) throws Exception {
+        ticket.setOutTime(outTime);
+        fareCalculation.accept(ticket, nbTicket);
+        PreparedStatement ps = con.prepareStatement(DBConstants.CLOSE_TICKET);
+        ps.setDouble(1, ticket.getPrice());
+        ps.setTimestamp(2, new Timestamp(outTime.getTime()));
+        ps.setInt(3, ticket.getId());
+        int updateRowCount = ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+        return updateRowCount == 0 ? null : ticket;
+    }
+
+    public boolean loadOpenTickets() {
+        long start = System.nanoTime();
+        //warm the open ticket cache with every ticket that has no out time yet
+        flushTicketJournal();
+        Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NB_TICKET);
-            ps.setString(1, vehicleRegNumber);
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                nbTicket = rs.getInt(1);
+            List<Ticket> openTickets = new ArrayList<>();
+            while (rs.next()) {
+                openTickets.add(readTicket(rs, rs.getString(7)));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            openTicketCache.load(openTickets);
+            logger.info("Loaded " + openTickets.size() + " open tickets in cache");
+            return true;
+        } catch (Exception ex) {
+            LOAD_OPEN_TICKETS_METRICS.recordFailure();
+            logger.error("Error loading open tickets", ex);
+            return false;
+        } finally {
+            LOAD_OPEN_TICKETS_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Streams every closed ticket of the ticket table (archived tickets are left out) in ID order through a
+    // forward-only cursor, handing them to the consumer in batches of batchSize that it keeps ownership of.
+    // recurringUser is true when the plate had an earlier ticket, which is what granted the discount at exit.
+    public long streamClosedTicketBatches(int batchSize, Consumer<TicketBatch> consumer) throws SQLException {
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getReadConnection();
+            ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(batchSize);
+            rs = ps.executeQuery();
+            return readBatches(rs, batchSize, consumer);
+        } catch (ClassNotFoundException ex) {
+            STREAM_CLOSED_TICKET_BATCHES_METRICS.recordFailure();
+            throw new SQLException(ex);
+        } finally {
+            STREAM_CLOSED_TICKET_BATCHES_METRICS.record(start);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Same as above for the tickets closed in [from, to[ with an id above afterId, archived ones included, so that an
+    // export can resume
+    public long streamClosedTicketBatches(Date from, Date to, int afterId, int batchSize, Consumer<TicketBatch> consumer)
+            throws SQLException {
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getReadConnection();
+            ps = con.prepareStatement(DBConstants.EXPORT_CLOSED_TICKETS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            //the same bounds for the live tickets and for the archive
+            for (int offset = 0; offset <= 3; offset += 3) {
+                ps.setTimestamp(offset + 1, new Timestamp(from.getTime()));
+                ps.setTimestamp(offset + 2, new Timestamp(to.getTime()));
+                ps.setInt(offset + 3, afterId);
             }
+            ps.setFetchSize(batchSize);
+            rs = ps.executeQuery();
+            return readBatches(rs, batchSize, consumer);
+        } catch (ClassNotFoundException ex) {
+            STREAM_CLOSED_TICKET_BATCHES_METRICS.recordFailure();
+            throw new SQLException(ex);
+        } finally {
+            STREAM_CLOSED_TICKET_BATCHES_METRICS.record(start);
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
 
+    private static long readBatches(ResultSet rs, int batchSize, Consumer<TicketBatch> consumer) throws SQLException {
+        long rowCount = 0;
+        TicketBatch batch = new TicketBatch(batchSize);
+        while (rs.next()) {
+            readClosedTicket(rs, batch);
+            rowCount++;
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new TicketBatch(batchSize);
+            }
+        }
+        if (batch.size() > 0) {
+            consumer.accept(batch);
+        }
+        return rowCount;
+    }
+
+    // Tickets closed in [from, to[, archived ones included, in columnar form, for reports over long periods
+    public TicketBatch loadClosedTickets(Date from, Date to) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getReadConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS_BETWEEN,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            for (int offset = 0; offset <= 2; offset += 2) {
+                ps.setTimestamp(offset + 1, new Timestamp(from.getTime()));
+                ps.setTimestamp(offset + 2, new Timestamp(to.getTime()));
+            }
+            ps.setFetchSize(CLOSED_TICKETS_FETCH_SIZE);
+            ResultSet rs = ps.executeQuery();
+            TicketBatch batch = new TicketBatch(CLOSED_TICKETS_FETCH_SIZE);
+            while (rs.next()) {
+                readClosedTicket(rs, batch);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return batch;
         } catch (Exception ex) {
-            logger.error("Error getting number of tickets", ex);
+            LOAD_CLOSED_TICKETS_METRICS.recordFailure();
+            logger.error("Error loading closed tickets", ex);
+            return null;
+        } finally {
+            LOAD_CLOSED_TICKETS_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // A ticket of an unknown parking type is logged and left out of the batch, so that it does not stop the stream
+    private static void readClosedTicket(ResultSet rs, TicketBatch batch) throws SQLException {
+        ParkingType parkingType;
+        try {
+            parkingType = ParkingType.valueOf(rs.getString(4));
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Ticket " + rs.getInt(1) + " skipped, unknown parking type " + rs.getString(4));
+            return;
+        }
+        batch.add(rs.getInt(1), rs.getInt(7), parkingType, rs.getString(8),
+                rs.getTimestamp(2).getTime(), rs.getTimestamp(3).getTime(), Math.round(rs.getDouble(5) * 100),
+                rs.getBoolean(6));
+    }
 
+    // Writes the given prices with one JDBC batch in a single transaction
+    public boolean updateTicketPrices(int[] ids, long[] pricesInCents, int count) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+            for (int i = 0; i < count; i++) {
+                ps.setDouble(1, pricesInCents[i] / 100.0);
+                ps.setInt(2, ids[i]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+            return true;
+        } catch (Exception ex) {
+            UPDATE_TICKET_PRICES_METRICS.recordFailure();
+            logger.error("Error updating ticket prices", ex);
+            dataBaseConfig.rollback(con);
+            return false;
         } finally {
+            UPDATE_TICKET_PRICES_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Inserts a batch drained from the ticket journal: one multi-row insert for the tickets and one for the visit
+    // counters, committed together with the last journal sequence of the batch
+    public boolean saveJournaledTickets(List<Ticket> tickets, String journalName, long lastSequence) {
+        return insertJournaledTickets(tickets, journalName, lastSequence) == JOURNALED_TICKET_SAVED;
+    }
+
+    // Same for a single ticket, telling a ticket the database will never take apart from a failure worth retrying
+    public int saveJournaledTicket(Ticket ticket, String journalName, long sequence) {
+        return insertJournaledTickets(Collections.singletonList(ticket), journalName, sequence);
+    }
+
+    private int insertJournaledTickets(List<Ticket> tickets, String journalName, long lastSequence) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement ps = con.prepareStatement(
+                    multiRowStatement(DBConstants.SAVE_TICKETS_PREFIX, DBConstants.SAVE_TICKETS_VALUES, tickets.size(), ""),
+                    Statement.RETURN_GENERATED_KEYS);
+            int index = 1;
+            for (Ticket ticket : tickets) {
+                ps.setInt(index++, ticket.getParkingSpot().getId());
+                ps.setString(index++, ticket.getVehicleRegNumber());
+                ps.setDouble(index++, ticket.getPrice());
+                ps.setTimestamp(index++, new Timestamp(ticket.getInTime().getTime()));
+                ps.setTimestamp(index++, (ticket.getOutTime() == null) ? null : (new Timestamp(ticket.getOutTime().getTime())));
+            }
+            ps.executeUpdate();
+            ResultSet generatedKeys = ps.getGeneratedKeys();
+            for (Ticket ticket : tickets) {
+                if (generatedKeys.next()) {
+                    ticket.setId(generatedKeys.getInt(1));
+                }
+            }
+            dataBaseConfig.closeResultSet(generatedKeys);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(multiRowStatement(DBConstants.INCREMENT_NB_TICKETS_PREFIX,
+                    DBConstants.INCREMENT_NB_TICKETS_VALUES, tickets.size(), DBConstants.INCREMENT_NB_TICKETS_SUFFIX));
+            index = 1;
+            for (Ticket ticket : tickets) {
+                ps.setString(index++, ticket.getVehicleRegNumber());
+            }
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.SAVE_JOURNAL_SEQUENCE);
+            ps.setString(1, journalName);
+            ps.setLong(2, lastSequence);
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            con.commit();
+            for (Ticket ticket : tickets) {
+                if (ticket.getOutTime() == null) {
+                    openTicketCache.assignId(ticket);
+                }
+            }
+            return JOURNALED_TICKET_SAVED;
+        } catch (Exception ex) {
+            SAVE_JOURNALED_TICKETS_METRICS.recordFailure();
+            logger.error("Error saving " + tickets.size() + " journaled tickets", ex);
+            dataBaseConfig.rollback(con);
+            return isRejectedRow(ex) ? JOURNALED_TICKET_REJECTED : 0;
+        } finally {
+            SAVE_JOURNALED_TICKETS_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Moves the checkpoint of the journal past a ticket the database rejected, which is then no longer open
+    public boolean skipJournaledTicket(Ticket ticket, String journalName, long sequence) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_JOURNAL_SEQUENCE);
+            ps.setString(1, journalName);
+            ps.setLong(2, sequence);
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            openTicketCache.evictUnsaved(ticket);
+            return true;
+        } catch (Exception ex) {
+            SAVE_JOURNALED_TICKETS_METRICS.recordFailure();
+            logger.error("Error skipping journaled ticket " + sequence, ex);
+            return false;
+        } finally {
+            SAVE_JOURNALED_TICKETS_METRICS.record(start);
             dataBaseConfig.closeConnection(con);
         }
-        return nbTicket;
     }
 
+    // SQL states of class 22 (data exception, e.g. a value too long) and 23 (integrity constraint violation)
+    private static boolean isRejectedRow(Exception ex) {
+        String sqlState = ex instanceof SQLException ? ((SQLException) ex).getSQLState() : null;
+        return sqlState != null && (sqlState.startsWith("22") || sqlState.startsWith("23"));
+    }
+
+    private static String multiRowStatement(String prefix, String values, int rows, String suffix) {
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (values.length() + 1) + suffix.length());
+        sql.append(prefix);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? " " : ",").append(values);
+        }
+        return sql.append(suffix).toString();
+    }
 
+    // Last journal sequence saved in the database, 0 for a new journal and -1 if it could not be read
+    public long getJournalSequence(String journalName) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_JOURNAL_SEQUENCE);
+            ps.setString(1, journalName);
+            ResultSet rs = ps.executeQuery();
+            long lastSequence = rs.next() ? rs.getLong(1) : 0;
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return lastSequence;
+        } catch (Exception ex) {
+            GET_JOURNAL_SEQUENCE_METRICS.recordFailure();
+            logger.error("Error reading ticket journal checkpoint", ex);
+            return -1;
+        } finally {
+            GET_JOURNAL_SEQUENCE_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Ids of the next tickets closed before closedBefore, in id order after afterId, null on error
+    public int[] getTicketIdsToArchive(Date closedBefore, int afterId, int limit) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_IDS_TO_ARCHIVE);
+            ps.setInt(1, afterId);
+            ps.setTimestamp(2, new Timestamp(closedBefore.getTime()));
+            ps.setInt(3, limit);
+            ResultSet rs = ps.executeQuery();
+            int[] ids = new int[limit];
+            int count = 0;
+            while (rs.next()) {
+                ids[count++] = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return Arrays.copyOf(ids, count);
+        } catch (Exception ex) {
+            GET_TICKET_IDS_TO_ARCHIVE_METRICS.recordFailure();
+            logger.error("Error reading the tickets to archive", ex);
+            return null;
+        } finally {
+            GET_TICKET_IDS_TO_ARCHIVE_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Moves the tickets with an id in [firstId, lastId] closed before closedBefore to ticket_archive in one short
+    // transaction. Returns the number of moved tickets, -1 on error. The visit counters are left as they are, so
+    // archived tickets still count in getNbTicket.
+    public int archiveTickets(int firstId, int lastId, Date closedBefore) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int copied = executeArchiveStatement(con, DBConstants.ARCHIVE_TICKETS, firstId, lastId, closedBefore);
+            int deleted = executeArchiveStatement(con, DBConstants.DELETE_ARCHIVED_TICKETS, firstId, lastId, closedBefore);
+            if (copied != deleted) {
+                throw new SQLException("Copied " + copied + " tickets to the archive but deleted " + deleted);
+            }
+            con.commit();
+            return deleted;
+        } catch (Exception ex) {
+            ARCHIVE_TICKETS_METRICS.recordFailure();
+            logger.error("Error archiving tickets " + firstId + " to " + lastId, ex);
+            dataBaseConfig.rollback(con);
+            return -1;
+        } finally {
+            ARCHIVE_TICKETS_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private int executeArchiveStatement(Connection con, String sql, int firstId, int lastId, Date closedBefore)
+            throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql);
+        ps.setInt(1, firstId);
+        ps.setInt(2, lastId);
+        ps.setTimestamp(3, new Timestamp(closedBefore.getTime()));
+        int rows = ps.executeUpdate();
+        dataBaseConfig.closePreparedStatement(ps);
+        return rows;
+    }
+
+    // Adds the monthly partitions of ticket_archive needed for the tickets closed before closedBefore, split from
+    // the empty p_future partition. Does nothing if the archive is not partitioned. Returns false on error.
+    public boolean addArchivePartitions(Date closedBefore) {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            YearMonth lastPartition = null;
+            boolean partitioned = false;
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_ARCHIVE_PARTITIONS);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                partitioned = true;
+                Matcher matcher = ARCHIVE_PARTITION_NAME.matcher(rs.getString(1));
+                if (matcher.matches()) {
+                    YearMonth month = YearMonth.parse(matcher.group(1), ARCHIVE_PARTITION_MONTH);
+                    if (lastPartition == null || month.isAfter(lastPartition)) {
+                        lastPartition = month;
+                    }
+                }
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            if (!partitioned) {
+                return true;
+            }
+            YearMonth firstMonth;
+            if (lastPartition != null) {
+                firstMonth = lastPartition.plusMonths(1);
+            } else {
+                ps = con.prepareStatement(DBConstants.GET_OLDEST_TICKET_TO_ARCHIVE);
+                ps.setTimestamp(1, new Timestamp(closedBefore.getTime()));
+                rs = ps.executeQuery();
+                Timestamp oldest = rs.next() ? rs.getTimestamp(1) : null;
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+                if (oldest == null) {
+                    return true;
+                }
+                firstMonth = YearMonth.from(oldest.toLocalDateTime());
+            }
+            YearMonth lastMonth = YearMonth.from(new Timestamp(closedBefore.getTime()).toLocalDateTime());
+            if (firstMonth.isAfter(lastMonth)) {
+                return true;
+            }
+            StringBuilder sql = new StringBuilder(DBConstants.ADD_ARCHIVE_PARTITIONS_PREFIX);
+            for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+                //the first partition also holds everything older
+                sql.append("partition p").append(month.format(ARCHIVE_PARTITION_MONTH))
+                        .append(" values less than ('").append(month.plusMonths(1).atDay(1)).append("'), ");
+            }
+            sql.append(DBConstants.ADD_ARCHIVE_PARTITIONS_SUFFIX);
+            Statement statement = con.createStatement();
+            statement.execute(sql.toString());
+            statement.close();
+            logger.info("Added the ticket archive partitions from " + firstMonth + " to " + lastMonth);
+            return true;
+        } catch (Exception ex) {
+            ADD_ARCHIVE_PARTITIONS_METRICS.recordFailure();
+            logger.error("Error adding ticket archive partitions", ex);
+            return false;
+        } finally {
+            ADD_ARCHIVE_PARTITIONS_METRICS.record(start);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    // Async variants: the same calls run on the database I/O executor so that independent lookups can overlap
+
+    public CompletableFuture<Boolean> saveTicketAsync(Ticket ticket) {
+        return CompletableFuture.supplyAsync(() -> saveTicket(ticket), dataBaseConfig.getIoExecutor());
+    }
+
+    public CompletableFuture<Ticket> getTicketAsync(String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> getTicket(vehicleRegNumber), dataBaseConfig.getIoExecutor());
+    }
+
+    public CompletableFuture<Boolean> updateTicketAsync(Ticket ticket) {
+        return CompletableFuture.supplyAsync(() -> updateTicket(ticket), dataBaseConfig.getIoExecutor());
+    }
+
+    @Override
+    public CompletableFuture<Integer> getNbTicketAsync(String vehicleRegNumber) {
+        return CompletableFuture.supplyAsync(() -> getNbTicket(vehicleRegNumber), dataBaseConfig.getIoExecutor());
+    }
+
+    public CompletableFuture<Ticket> closeTicketAsync(String vehicleRegNumber, Date outTime,
+                                                      BiConsumer<Ticket, Integer> fareCalculation) {
+        return CompletableFuture.supplyAsync(() -> closeTicket(vehicleRegNumber, outTime, fareCalculation),
+                dataBaseConfig.getIoExecutor());
+    }
 }
@@ -0,0 +1,527 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.Facility;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind journal for new tickets. {@link #append(Ticket)} returns once the ticket is fsynced to a local
+ * append-only file; appends arriving together share one fsync (group commit). A background thread drains the
+ * journal into the ticket table with multi-row inserts, one transaction per batch, and records the last journal
+ * sequence it inserted in the ticket_journal table of the same transaction. On restart the entries past that
+ * sequence are replayed, so a crash at any point neither loses nor duplicates a ticket.
+ * <p>
+ * File layout: a 16 byte header holding a random id of the journal file and the sequence preceding its first
+ * record, then records made of [payload length][CRC32 of payload][payload]. The id is part of the name under
+ * which the checkpoint is stored, so a recreated file never inherits the checkpoint of a deleted one.
+ * A torn record at the end of the file is cut off on open.
+ * <p>
+ * When a batch fails, its tickets are inserted one at a time so that a row the database rejects (bad data or a
+ * broken constraint, not a lost connection) holds up no other. Such a row is written to the dead-letter file {@code <journal>.rejected}, one tab-separated line per
+ * ticket, and the checkpoint moves past it.
+ */
+public class TicketJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("TicketJournal");
+
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    // Once everything is in the database, the file is emptied when it grows past this size
+    private static final long COMPACTION_THRESHOLD_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final String name;
+    private final Path rejectedFile;
+    private final TicketDAO ticketDAO;
+    private final int batchSize;
+
+    // Guarded by this: appends waiting for the writer thread
+    private List<JournalRecord> pendingAppends = new ArrayList<>();
+    private long lastSequence;
+    private boolean closed;
+
+    private final BlockingQueue<JournalRecord> toDrain = new LinkedBlockingQueue<>();
+    private final Object drainProgress = new Object();
+    private volatile long lastWrittenSequence;
+    private volatile long persistedSequence = -1;
+
+    private final Thread writer;
+    private final Thread drainer;
+
+    public TicketJournal(Path file, TicketDAO ticketDAO) throws IOException {
+        this(file, ticketDAO, DEFAULT_BATCH_SIZE);
+    }
+
+    public TicketJournal(Path file, TicketDAO ticketDAO, int batchSize) throws IOException {
+        this.ticketDAO = ticketDAO;
+        this.batchSize = batchSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = readOrCreateHeader();
+        this.name = file.getFileName() + ":" + Long.toHexString(header.getLong(0));
+        this.rejectedFile = file.resolveSibling(file.getFileName() + ".rejected");
+        List<JournalRecord> records = readRecords();
+        lastSequence = records.isEmpty() ? header.getLong(8) : records.get(records.size() - 1).sequence;
+        lastWrittenSequence = lastSequence;
+        toDrain.addAll(records);
+
+        writer = new Thread(this::writeLoop, "ticket-journal-writer");
+        writer.setDaemon(true);
+        drainer = new Thread(this::drainLoop, "ticket-journal-drainer");
+        drainer.setDaemon(true);
+        writer.start();
+        drainer.start();
+        logger.info("Opened ticket journal " + file + " with " + records.size() + " entries to check");
+    }
+
+    // Write-behind is enabled by pointing -Dparkit.ticketJournal at the journal file
+    public static TicketJournal fromSystemProperties(TicketDAO ticketDAO) {
+        String file = System.getProperty("parkit.ticketJournal");
+        if (file == null) {
+            return null;
+        }
+        Path path = Paths.get(file);
+        if (ticketDAO.getFacilityId() != Facility.DEFAULT_ID) {
+            //one journal per car park, named after the journal of the default one
+            path = path.resolveSibling(path.getFileName() + "-" + ticketDAO.getFacilityId());
+        }
+        try {
+            return new TicketJournal(path, ticketDAO,
+                    Integer.getInteger("parkit.ticketJournal.batchSize", DEFAULT_BATCH_SIZE));
+        } catch (IOException e) {
+            logger.error("Unable to open ticket journal " + file + ", tickets are saved synchronously", e);
+            return null;
+        }
+    }
+
+    /**
+     * Appends the ticket and waits until it is on disk. Returns false if it could not be written.
+     */
+    public boolean append(Ticket ticket) {
+        if (!isInsertable(ticket)) {
+            logger.error("Ticket of " + ticket.getVehicleRegNumber() + " not journaled, the database would reject it");
+            return false;
+        }
+        JournalRecord record = new JournalRecord(ticket);
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            record.sequence = ++lastSequence;
+            pendingAppends.add(record);
+            notifyAll();
+        }
+        try {
+            return record.durable.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits until every ticket appended so far is in the database. Returns false on timeout.
+     */
+    public boolean flush(long timeoutMillis) {
+        long target;
+        synchronized (this) {
+            target = lastSequence;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (drainProgress) {
+            while (persistedSequence < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !drainer.isAlive()) {
+                    return false;
+                }
+                try {
+                    drainProgress.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Checked before appending: a ticket is replayed until the database takes it
+    private static boolean isInsertable(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        return vehicleRegNumber != null && !vehicleRegNumber.trim().isEmpty()
+                && vehicleRegNumber.length() <= DBConstants.VEHICLE_REG_NUMBER_MAX_LENGTH
+                && ticket.getParkingSpot() != null && ticket.getInTime() != null;
+    }
+
+    public int getPendingCount() {
+        return toDrain.size();
+    }
+
+    /**
+     * Stops accepting tickets, writes and drains what is already appended, then closes the file. Entries that
+     * could not be drained stay in the journal and are replayed on the next open.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<JournalRecord> batch;
+            synchronized (this) {
+                while (pendingAppends.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingAppends.isEmpty()) {
+                    return;
+                }
+                batch = pendingAppends;
+                pendingAppends = new ArrayList<>();
+            }
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<JournalRecord> batch) {
+        long position = -1;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (JournalRecord record : batch) {
+                record.writeTo(bytes);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            synchronized (channel) {
+                position = channel.size();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+                //one fsync for the whole batch
+                channel.force(false);
+                lastWrittenSequence = batch.get(batch.size() - 1).sequence;
+            }
+        } catch (IOException e) {
+            logger.error("Unable to write " + batch.size() + " tickets to journal " + name, e);
+            truncateAfterFailedWrite(position);
+            for (JournalRecord record : batch) {
+                record.durable.complete(false);
+            }
+            return;
+        }
+        toDrain.addAll(batch);
+        for (JournalRecord record : batch) {
+            record.durable.complete(true);
+        }
+    }
+
+    private void truncateAfterFailedWrite(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            synchronized (channel) {
+                channel.truncate(position);
+            }
+        } catch (IOException e) {
+            logger.error("Unable to cut the partial write off journal " + name, e);
+        }
+    }
+
+    private void drainLoop() {
+        long checkpoint = readCheckpoint();
+        if (checkpoint < 0) {
+            return;
+        }
+        List<JournalRecord> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                if (batch.isEmpty()) {
+                    JournalRecord first = toDrain.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (isClosedAndWritten()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    toDrain.drainTo(batch, batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            List<Ticket> tickets = new ArrayList<>(batch.size());
+            for (JournalRecord record : batch) {
+                //already inserted before a crash or restart
+                if (record.sequence > checkpoint) {
+                    tickets.add(record.ticket);
+                }
+            }
+            long batchSequence = batch.get(batch.size() - 1).sequence;
+            if (tickets.isEmpty() || ticketDAO.saveJournaledTickets(tickets, name, batchSequence)) {
+                checkpoint = Math.max(checkpoint, batchSequence);
+                batch.clear();
+                publishCheckpoint(checkpoint);
+            } else if (!isClosed()) {
+                checkpoint = drainOneByOne(batch, checkpoint);
+            }
+            if (!batch.isEmpty()) {
+                if (isClosed()) {
+                    logger.warn("Ticket journal " + name + " closed with " + (batch.size() + toDrain.size())
+                            + " tickets left to replay");
+                    return;
+                }
+                sleepBeforeRetry();
+                continue;
+            }
+            compactIfDrained(checkpoint);
+        }
+    }
+
+    // Inserts the records of a failed batch one at a time, removing them from the batch as they are done, and
+    // stops at the first failure that is not the row's fault. Returns the new checkpoint.
+    private long drainOneByOne(List<JournalRecord> batch, long checkpoint) {
+        Iterator<JournalRecord> records = batch.iterator();
+        while (records.hasNext()) {
+            JournalRecord record = records.next();
+            if (record.sequence > checkpoint) {
+                int result = ticketDAO.saveJournaledTicket(record.ticket, name, record.sequence);
+                boolean done = result == TicketDAO.JOURNALED_TICKET_SAVED
+                        || (result == TicketDAO.JOURNALED_TICKET_REJECTED && reject(record));
+                if (!done) {
+                    return checkpoint;
+                }
+            }
+            checkpoint = Math.max(checkpoint, record.sequence);
+            records.remove();
+            publishCheckpoint(checkpoint);
+        }
+        return checkpoint;
+    }
+
+    // Written to the dead-letter file before the checkpoint moves, so a crash in between can only repeat a line
+    private boolean reject(JournalRecord record) {
+        Ticket ticket = record.ticket;
+        String line = record.sequence + "\t" + ticket.getParkingSpot().getId() + "\t"
+                + ticket.getParkingSpot().getParkingType() + "\t" + ticket.getVehicleRegNumber() + "\t"
+                + ticket.getPrice() + "\t" + ticket.getInTime().getTime() + "\t"
+                + (ticket.getOutTime() == null ? "" : ticket.getOutTime().getTime()) + System.lineSeparator();
+        try {
+            Files.write(rejectedFile, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+        } catch (IOException e) {
+            logger.error("Unable to write the rejected ticket " + record.sequence + " to " + rejectedFile, e);
+            return false;
+        }
+        if (!ticketDAO.skipJournaledTicket(ticket, name, record.sequence)) {
+            return false;
+        }
+        logger.error("Ticket of " + ticket.getVehicleRegNumber() + " on spot " + ticket.getParkingSpot().getId()
+                + " rejected by the database, moved to " + rejectedFile);
+        return true;
+    }
+
+    private void publishCheckpoint(long checkpoint) {
+        synchronized (drainProgress) {
+            persistedSequence = checkpoint;
+            drainProgress.notifyAll();
+        }
+    }
+
+    // Last sequence already in the database, retried until the database answers
+    private long readCheckpoint() {
+        while (true) {
+            long checkpoint = ticketDAO.getJournalSequence(name);
+            if (checkpoint >= 0) {
+                synchronized (drainProgress) {
+                    persistedSequence = Math.max(checkpoint, persistedSequence);
+                    drainProgress.notifyAll();
+                }
+                return checkpoint;
+            }
+            if (isClosed()) {
+                return -1;
+            }
+            sleepBeforeRetry();
+        }
+    }
+
+    private void compactIfDrained(long checkpoint) {
+        try {
+            synchronized (channel) {
+                if (checkpoint == lastWrittenSequence && toDrain.isEmpty()
+                        && channel.size() > COMPACTION_THRESHOLD_BYTES) {
+                    //the header keeps the sequence so that numbering goes on after a restart
+                    ByteBuffer baseSequence = ByteBuffer.allocate(8).putLong(0, checkpoint);
+                    channel.write(baseSequence, 8);
+                    channel.truncate(HEADER_BYTES);
+                    channel.force(true);
+                    logger.info("Compacted ticket journal " + name);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Unable to compact ticket journal " + name, e);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized boolean isClosedAndWritten() {
+        return closed && pendingAppends.isEmpty() && !writer.isAlive() && toDrain.isEmpty();
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ByteBuffer readOrCreateHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (channel.size() >= HEADER_BYTES) {
+            channel.read(header, 0);
+            return header;
+        }
+        //new journal (or one that crashed while being created)
+        header.putLong(0, UUID.randomUUID().getMostSignificantBits()).putLong(8, 0);
+        channel.truncate(0);
+        channel.write(header, 0);
+        channel.force(true);
+        header.clear();
+        return header;
+    }
+
+    // Reads every complete record and cuts off a record torn by a crash in the middle of a write
+    private List<JournalRecord> readRecords() throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        long position = HEADER_BYTES;
+        long size = channel.size();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            recordHeader.clear();
+            channel.read(recordHeader, position);
+            int length = recordHeader.getInt(0);
+            int crc = recordHeader.getInt(4);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + RECORD_HEADER_BYTES);
+            if (crc(payload.array()) != crc) {
+                break;
+            }
+            records.add(JournalRecord.read(payload.array()));
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < size) {
+            logger.warn("Discarding " + (size - position) + " bytes of incomplete entry at the end of journal " + name);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return records;
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        return (int) crc32.getValue();
+    }
+
+    private static class JournalRecord {
+
+        private final Ticket ticket;
+        private final CompletableFuture<Boolean> durable = new CompletableFuture<>();
+        private long sequence;
+
+        JournalRecord(Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        void writeTo(ByteArrayOutputStream out) throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+            DataOutputStream data = new DataOutputStream(payload);
+            data.writeLong(sequence);
+            data.writeInt(ticket.getParkingSpot().getId());
+            data.writeUTF(ticket.getParkingSpot().getParkingType().name());
+            data.writeUTF(ticket.getVehicleRegNumber());
+            data.writeDouble(ticket.getPrice());
+            data.writeLong(ticket.getInTime().getTime());
+            data.writeLong(ticket.getOutTime() == null ? -1 : ticket.getOutTime().getTime());
+            data.flush();
+            byte[] bytes = payload.toByteArray();
+            DataOutputStream record = new DataOutputStream(out);
+            record.writeInt(bytes.length);
+            record.writeInt(crc(bytes));
+            record.write(bytes);
+            record.flush();
+        }
+
+        static JournalRecord read(byte[] payload) throws IOException {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+            long sequence = data.readLong();
+            int parkingNumber = data.readInt();
+            ParkingType parkingType = ParkingType.valueOf(data.readUTF());
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+            ticket.setVehicleRegNumber(data.readUTF());
+            ticket.setPrice(data.readDouble());
+            ticket.setInTime(new Date(data.readLong()));
+            long outTime = data.readLong();
+            ticket.setOutTime(outTime < 0 ? null : new Date(outTime));
+            JournalRecord record = new JournalRecord(ticket);
+            record.sequence = sequence;
+            record.durable.complete(true);
+            return record;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.Facility;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Ticket storage used by ParkingService, implemented by TicketDAO (MySQL) and MappedTicketStore (local files).
+ */
+public interface TicketRepository {
+
+    boolean saveTicket(Ticket ticket);
+
+    Ticket getTicket(String vehicleRegNumber);
+
+    boolean updateTicket(Ticket ticket);
+
+    int getNbTicket(String vehicleRegNumber);
+
+    // Closes the open ticket of the plate at outTime, priced by the callback from the ticket and the number of
+    // tickets of the plate. Returns the closed ticket, or null if there is no open ticket or the exit failed.
+    Ticket closeTicket(String vehicleRegNumber, Date outTime, BiConsumer<Ticket, Integer> fareCalculation);
+
+    default CompletableFuture<Integer> getNbTicketAsync(String vehicleRegNumber) {
+        return CompletableFuture.completedFuture(getNbTicket(vehicleRegNumber));
+    }
+
+    // Car park whose spots or tickets this repository holds
+    default int getFacilityId() {
+        return Facility.DEFAULT_ID;
+    }
+}
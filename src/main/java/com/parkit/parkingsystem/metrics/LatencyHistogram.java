@@ -0,0 +1,100 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with log-linear buckets, like HdrHistogram: each power of two is
+ * split into 16 buckets, so a percentile is reported within 6.25% of the recorded value whatever its magnitude.
+ * Recording is one atomic increment; reading copies the buckets into a {@link Snapshot}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos)));
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            copy[bucket] = counts.get(bucket);
+        }
+        return new Snapshot(copy);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Highest value that falls in the bucket
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Bucket counts at one point in time. Subtracting the previous snapshot gives the histogram of an interval.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long totalCount;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+        }
+
+        public Snapshot minus(Snapshot previous) {
+            long[] difference = new long[counts.length];
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                difference[bucket] = counts[bucket] - previous.counts[bucket];
+            }
+            return new Snapshot(difference);
+        }
+
+        public long getCount() {
+            return totalCount;
+        }
+
+        // In nanoseconds, 0 when nothing was recorded
+        public long getValueAtPercentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return highestValueOf(bucket);
+                }
+            }
+            return 0;
+        }
+
+        public long getMax() {
+            for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+                if (counts[bucket] > 0) {
+                    return highestValueOf(bucket);
+                }
+            }
+            return 0;
+        }
+    }
+}
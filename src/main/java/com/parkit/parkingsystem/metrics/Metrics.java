@@ -0,0 +1,91 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the {@link OperationMetrics} of the application. {@link #start()} publishes them as a JMX bean and
+ * logs a summary of the last interval every -Dparkit.metrics.logSeconds (60 by default, 0 to disable).
+ */
+public class Metrics implements MetricsMXBean {
+
+    private static final Logger logger = LogManager.getLogger("Metrics");
+
+    private static final Map<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private final Map<String, LatencyHistogram.Snapshot> previousSnapshots = new HashMap<>();
+    private final Map<String, Long> previousFailures = new HashMap<>();
+
+    public static OperationMetrics operation(String name) {
+        return operations.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+    public static synchronized void start() {
+        if (reporter != null) {
+            return;
+        }
+        Metrics metrics = new Metrics();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("com.parkit.parkingsystem:type=Metrics"));
+        } catch (JMException e) {
+            logger.warn("Unable to register the metrics JMX bean", e);
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long logSeconds = Long.getLong("parkit.metrics.logSeconds", 60);
+        if (logSeconds > 0) {
+            reporter.scheduleAtFixedRate(metrics::logInterval, logSeconds, logSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public List<OperationSnapshot> getOperations() {
+        List<OperationSnapshot> snapshots = new ArrayList<>();
+        for (OperationMetrics operation : operations.values()) {
+            snapshots.add(new OperationSnapshot(operation.getName(), operation.getLatency().snapshot(),
+                    operation.getFailures()));
+        }
+        return snapshots;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (OperationSnapshot snapshot : getOperations()) {
+            summary.append(snapshot).append('\n');
+        }
+        return summary.toString();
+    }
+
+    // Only the operations called since the previous summary are logged
+    synchronized void logInterval() {
+        for (OperationMetrics operation : operations.values()) {
+            LatencyHistogram.Snapshot current = operation.getLatency().snapshot();
+            LatencyHistogram.Snapshot previous = previousSnapshots.put(operation.getName(), current);
+            LatencyHistogram.Snapshot interval = previous == null ? current : current.minus(previous);
+            long failures = operation.getFailures();
+            Long previousFailureCount = previousFailures.put(operation.getName(), failures);
+            if (interval.getCount() > 0) {
+                logger.info(new OperationSnapshot(operation.getName(), interval,
+                        previousFailureCount == null ? failures : failures - previousFailureCount).toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the operation metrics, registered as com.parkit.parkingsystem:type=Metrics. Counts and percentiles
+ * are cumulative since startup.
+ */
+public interface MetricsMXBean {
+
+    List<OperationSnapshot> getOperations();
+
+    String getSummary();
+}
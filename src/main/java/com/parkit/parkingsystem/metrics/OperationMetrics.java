@@ -0,0 +1,38 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and failure count of one operation, e.g. TicketDAO.getTicket. Callers keep the instance in a static
+ * field and call {@link #record(long)} with the System.nanoTime() taken when the operation started.
+ */
+public class OperationMetrics {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public void record(long startNanos) {
+        latency.record(System.nanoTime() - startNanos);
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+}
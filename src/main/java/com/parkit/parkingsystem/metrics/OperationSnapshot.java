@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * Counters and latency percentiles of one operation, as shown by the JMX bean and the log summary.
+ */
+public class OperationSnapshot {
+
+    private final String name;
+    private final long count;
+    private final long failures;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    public OperationSnapshot(String name, LatencyHistogram.Snapshot latency, long failures) {
+        this.name = name;
+        this.count = latency.getCount();
+        this.failures = failures;
+        this.p50Micros = latency.getValueAtPercentile(50) / 1000.0;
+        this.p99Micros = latency.getValueAtPercentile(99) / 1000.0;
+        this.p999Micros = latency.getValueAtPercentile(99.9) / 1000.0;
+        this.maxMicros = latency.getMax() / 1000.0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d calls, %d failures, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                name, count, failures, p50Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
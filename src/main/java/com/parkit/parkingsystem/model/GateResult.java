@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.model;
+
+/**
+ * Outcome of a vehicle passing an entry or exit gate.
+ */
+public class GateResult {
+
+    public enum Status {
+        ENTERED,
+        PARKING_FULL,
+        EXITED,
+        TICKET_NOT_CLOSED,
+        ERROR
+    }
+
+    private final Status status;
+    private final Ticket ticket;
+    private final boolean recurringUser;
+
+    private GateResult(Status status, Ticket ticket, boolean recurringUser) {
+        this.status = status;
+        this.ticket = ticket;
+        this.recurringUser = recurringUser;
+    }
+
+    public static GateResult entered(Ticket ticket, boolean recurringUser) {
+        return new GateResult(Status.ENTERED, ticket, recurringUser);
+    }
+
+    public static GateResult exited(Ticket ticket, boolean recurringUser) {
+        return new GateResult(Status.EXITED, ticket, recurringUser);
+    }
+
+    public static GateResult of(Status status) {
+        return new GateResult(status, null, false);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.ENTERED || status == Status.EXITED;
+    }
+
+    public Ticket getTicket() {
+        return ticket;
+    }
+
+    public ParkingSpot getParkingSpot() {
+        return ticket == null ? null : ticket.getParkingSpot();
+    }
+
+    public double getFare() {
+        return ticket == null ? 0 : ticket.getPrice();
+    }
+
+    public boolean isRecurringUser() {
+        return recurringUser;
+    }
+}
@@ -1,18 +1,33 @@
 package com.parkit.parkingsystem.model;
 
+import com.parkit.parkingsystem.constants.Facility;
 import com.parkit.parkingsystem.constants.ParkingType;
 
 public class ParkingSpot {
+    private int facilityId;
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
+        this(Facility.DEFAULT_ID, number, parkingType, isAvailable);
+    }
+
+    public ParkingSpot(int facilityId, int number, ParkingType parkingType, boolean isAvailable) {
+        this.facilityId = facilityId;
         this.number = number;
         this.parkingType = parkingType;
         this.isAvailable = isAvailable;
     }
 
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    public void setFacilityId(int facilityId) {
+        this.facilityId = facilityId;
+    }
+
     public int getId() {
         return number;
     }
@@ -42,11 +57,12 @@ public class ParkingSpot {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ParkingSpot that = (ParkingSpot) o;
-        return number == that.number;
+        //spot numbers are only unique within a car park
+        return facilityId == that.facilityId && number == that.number;
     }
 
     @Override
     public int hashCode() {
-        return number;
+        return 31 * facilityId + number;
     }
 }
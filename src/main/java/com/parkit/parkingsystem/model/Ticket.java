@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.model;
 
+import com.parkit.parkingsystem.constants.Facility;
 import com.parkit.parkingsystem.constants.Fare;
 
 import java.text.DecimalFormat;
@@ -8,6 +9,7 @@ import java.util.Date;
 
 public class Ticket {
     private int id;
+    private int facilityId = Facility.DEFAULT_ID;
     private ParkingSpot parkingSpot;
     private String vehicleRegNumber;
     private double price;
@@ -22,6 +24,14 @@ public class Ticket {
         this.id = id;
     }
 
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    public void setFacilityId(int facilityId) {
+        this.facilityId = facilityId;
+    }
+
     public ParkingSpot getParkingSpot() {
         return parkingSpot;
     }
@@ -49,6 +59,14 @@ public class Ticket {
         this.price = price;
     }
 
+    public long getPriceInCents() {
+        return Math.round(price * 100);
+    }
+
+    public void setPriceInCents(long priceInCents) {
+        this.price = priceInCents / 100.0;
+    }
+
     public Date getInTime() {
         return inTime;
     }
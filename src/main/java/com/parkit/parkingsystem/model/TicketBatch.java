@@ -0,0 +1,168 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented set of tickets for bulk work (reports, re-rating). Each field is a primitive array indexed by
+ * row and plates are dictionary-encoded, so a ticket costs about 40 bytes instead of the five objects of a
+ * {@link Ticket}. Times are epoch millis, an open ticket has an out time of {@link #OPEN}.
+ */
+public class TicketBatch {
+
+    public static final long OPEN = -1;
+
+    private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+    private int size;
+    private int[] ids;
+    private int[] parkingNumbers;
+    private byte[] parkingTypes;
+    private int[] plateIds;
+    private long[] inTimes;
+    private long[] outTimes;
+    private long[] pricesInCents;
+    private final BitSet recurringUsers = new BitSet();
+
+    private String[] plates = new String[16];
+    private int plateCount;
+    private final Map<String, Integer> plateDictionary = new HashMap<>();
+
+    public TicketBatch(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        ids = new int[capacity];
+        parkingNumbers = new int[capacity];
+        parkingTypes = new byte[capacity];
+        plateIds = new int[capacity];
+        inTimes = new long[capacity];
+        outTimes = new long[capacity];
+        pricesInCents = new long[capacity];
+    }
+
+    // Returns the row of the added ticket
+    public int add(int id, int parkingNumber, ParkingType parkingType, String vehicleRegNumber, long inTimeMillis,
+                   long outTimeMillis, long priceInCents, boolean recurringUser) {
+        if (size == ids.length) {
+            grow();
+        }
+        int row = size++;
+        ids[row] = id;
+        parkingNumbers[row] = parkingNumber;
+        parkingTypes[row] = (byte) parkingType.ordinal();
+        plateIds[row] = plateId(vehicleRegNumber);
+        inTimes[row] = inTimeMillis;
+        outTimes[row] = outTimeMillis;
+        pricesInCents[row] = priceInCents;
+        recurringUsers.set(row, recurringUser);
+        return row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        recurringUsers.clear();
+        Arrays.fill(plates, 0, plateCount, null);
+        plateCount = 0;
+        plateDictionary.clear();
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public int getParkingNumber(int row) {
+        return parkingNumbers[row];
+    }
+
+    public int getParkingTypeOrdinal(int row) {
+        return parkingTypes[row];
+    }
+
+    public ParkingType getParkingType(int row) {
+        return PARKING_TYPES[parkingTypes[row]];
+    }
+
+    // Same id for every row of the same plate, from 0 to getPlateCount() - 1
+    public int getPlateId(int row) {
+        return plateIds[row];
+    }
+
+    public int getPlateCount() {
+        return plateCount;
+    }
+
+    public String getPlate(int plateId) {
+        return plates[plateId];
+    }
+
+    public String getVehicleRegNumber(int row) {
+        return plates[plateIds[row]];
+    }
+
+    public long getInTime(int row) {
+        return inTimes[row];
+    }
+
+    public long getOutTime(int row) {
+        return outTimes[row];
+    }
+
+    public boolean isOpen(int row) {
+        return outTimes[row] == OPEN;
+    }
+
+    public long getPriceInCents(int row) {
+        return pricesInCents[row];
+    }
+
+    public void setPriceInCents(int row, long priceInCents) {
+        pricesInCents[row] = priceInCents;
+    }
+
+    public boolean isRecurringUser(int row) {
+        return recurringUsers.get(row);
+    }
+
+    public Ticket toTicket(int row) {
+        Ticket ticket = new Ticket();
+        ticket.setId(ids[row]);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumbers[row], getParkingType(row), isOpen(row)));
+        ticket.setVehicleRegNumber(getVehicleRegNumber(row));
+        ticket.setPriceInCents(pricesInCents[row]);
+        ticket.setInTime(new Date(inTimes[row]));
+        ticket.setOutTime(isOpen(row) ? null : new Date(outTimes[row]));
+        return ticket;
+    }
+
+    private int plateId(String vehicleRegNumber) {
+        Integer plateId = plateDictionary.get(vehicleRegNumber);
+        if (plateId == null) {
+            if (plateCount == plates.length) {
+                plates = Arrays.copyOf(plates, plateCount * 2);
+            }
+            plateId = plateCount++;
+            plates[plateId] = vehicleRegNumber;
+            plateDictionary.put(vehicleRegNumber, plateId);
+        }
+        return plateId;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        parkingNumbers = Arrays.copyOf(parkingNumbers, capacity);
+        parkingTypes = Arrays.copyOf(parkingTypes, capacity);
+        plateIds = Arrays.copyOf(plateIds, capacity);
+        inTimes = Arrays.copyOf(inTimes, capacity);
+        outTimes = Arrays.copyOf(outTimes, capacity);
+        pricesInCents = Arrays.copyOf(pricesInCents, capacity);
+    }
+}
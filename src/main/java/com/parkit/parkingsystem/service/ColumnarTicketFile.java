@@ -0,0 +1,153 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.TicketBatch;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Binary columnar ticket file written by the export. After an 8 byte header ([magic][version]) the file is a
+ * sequence of row groups, one per exported {@link TicketBatch}:
+ * <pre>
+ * [row count][plate count] then each plate as [length (short)][UTF-8 bytes], then the columns one after the other:
+ * ids (int), parking numbers (int), parking type ordinals (byte), plate ids (int), in times (long),
+ * out times (long), prices in cents (long), recurring user flags (byte)
+ * </pre>
+ * Numbers are big-endian and times are epoch millis. A reader only needs the columns it sums, e.g. the prices
+ * and out times for daily revenue.
+ */
+public class ColumnarTicketFile {
+
+    public static final int HEADER_BYTES = 8;
+
+    private static final int MAGIC = 0x504b5443;
+    private static final int VERSION = 1;
+    // Bytes per row in the columns: 3 int, 3 long and 2 byte columns
+    private static final int ROW_BYTES = 38;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    public static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(channel, header);
+    }
+
+    // The buffer is reused from one row group to the next, so memory stays bounded by the largest batch
+    public void writeRowGroup(FileChannel channel, TicketBatch batch) throws IOException {
+        int size = batch.size();
+        byte[][] plates = new byte[batch.getPlateCount()][];
+        int plateBytes = 0;
+        for (int plateId = 0; plateId < plates.length; plateId++) {
+            plates[plateId] = batch.getPlate(plateId).getBytes(StandardCharsets.UTF_8);
+            plateBytes += 2 + plates[plateId].length;
+        }
+        int groupBytes = 8 + plateBytes + size * ROW_BYTES;
+        if (buffer.capacity() < groupBytes) {
+            buffer = ByteBuffer.allocate(groupBytes);
+        }
+        buffer.clear();
+        buffer.putInt(size).putInt(plates.length);
+        for (byte[] plate : plates) {
+            buffer.putShort((short) plate.length).put(plate);
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putInt(batch.getId(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putInt(batch.getParkingNumber(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.put((byte) batch.getParkingTypeOrdinal(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putInt(batch.getPlateId(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putLong(batch.getInTime(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putLong(batch.getOutTime(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putLong(batch.getPriceInCents(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.put((byte) (batch.isRecurringUser(row) ? 1 : 0));
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    // Hands each row group of the file to the consumer as a batch
+    public static void read(Path file, Consumer<TicketBatch> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a columnar ticket export");
+            }
+            ParkingType[] parkingTypes = ParkingType.values();
+            while (channel.position() < channel.size()) {
+                ByteBuffer counts = readFully(channel, 8);
+                int size = counts.getInt();
+                String[] plates = new String[counts.getInt()];
+                for (int plateId = 0; plateId < plates.length; plateId++) {
+                    byte[] plate = new byte[readFully(channel, 2).getShort()];
+                    readFully(channel, plate.length).get(plate);
+                    plates[plateId] = new String(plate, StandardCharsets.UTF_8);
+                }
+                ByteBuffer columns = readFully(channel, size * ROW_BYTES);
+                int[] ids = new int[size];
+                int[] parkingNumbers = new int[size];
+                byte[] types = new byte[size];
+                int[] plateIds = new int[size];
+                long[] inTimes = new long[size];
+                long[] outTimes = new long[size];
+                long[] prices = new long[size];
+                columns.asIntBuffer().get(ids);
+                columns.position(columns.position() + size * 4);
+                columns.asIntBuffer().get(parkingNumbers);
+                columns.position(columns.position() + size * 4);
+                columns.get(types);
+                columns.asIntBuffer().get(plateIds);
+                columns.position(columns.position() + size * 4);
+                columns.asLongBuffer().get(inTimes);
+                columns.position(columns.position() + size * 8);
+                columns.asLongBuffer().get(outTimes);
+                columns.position(columns.position() + size * 8);
+                columns.asLongBuffer().get(prices);
+                columns.position(columns.position() + size * 8);
+                TicketBatch batch = new TicketBatch(size);
+                for (int row = 0; row < size; row++) {
+                    batch.add(ids[row], parkingNumbers[row], parkingTypes[types[row]], plates[plateIds[row]],
+                            inTimes[row], outTimes[row], prices[row], columns.get() == 1);
+                }
+                consumer.accept(batch);
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated columnar ticket export");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
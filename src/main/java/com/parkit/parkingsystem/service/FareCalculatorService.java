@@ -1,63 +1,65 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketBatch;
 
 public class FareCalculatorService {
 
-    private static final int MILLIS_PER_MINUTE = 60000;
+    private static final long MILLIS_PER_MINUTE = 60000;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long FREE_DURATION_MILLIS = 30 * MILLIS_PER_MINUTE;
+    private static final long DISCOUNT_PERCENT = 95;
+    private static final OperationMetrics CALCULATE_FARE_METRICS = Metrics.operation("FareCalculatorService.calculateFare");
+
+    // Hourly rates in cents indexed by ParkingType ordinal, converted from Fare once
+    private static final long[] RATE_CENTS_PER_HOUR = new long[ParkingType.values().length];
+
+    static {
+        RATE_CENTS_PER_HOUR[ParkingType.CAR.ordinal()] = Math.round(Fare.CAR_RATE_PER_HOUR * 100);
+        RATE_CENTS_PER_HOUR[ParkingType.BIKE.ordinal()] = Math.round(Fare.BIKE_RATE_PER_HOUR * 100);
+    }
 
     public void calculateFare(Ticket ticket) {
         calculateFare(ticket, false); // Default to no discount
     }
 
     public void calculateFare(Ticket ticket, boolean discount) {
+        long start = System.nanoTime();
         if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
+            CALCULATE_FARE_METRICS.recordFailure();
             throw new IllegalArgumentException("Out time provided is incorrect:" + ticket.getOutTime().toString());
         }
 
-        double inTime = ticket.getInTime().getTime();
-        double outTime = ticket.getOutTime().getTime();
-        double durationMillis = outTime - inTime;
-        double duration = durationMillis / MILLIS_PER_MINUTE;
-
-        int freeDuration = 30;
-
-        switch (ticket.getParkingSpot().getParkingType()) {
-            case CAR: {
-                if (duration <= freeDuration) {
-                    ticket.setPrice(0);
-                } else {
-                    double farePerMin = Fare.CAR_RATE_PER_HOUR / 60;
-                    double payingDuration = duration - freeDuration;
-                    double fare = payingDuration * farePerMin;
-                    if (discount) {
-                        double discountedFare = fare * 95 / 100;
-                        ticket.setPrice(discountedFare);
-                    } else {
-                        ticket.setPrice(fare);
-                    }
-                    break;
-                }
-            }
-
-            case BIKE: {
-                if (duration <= freeDuration) {
-                    ticket.setPrice(0);
-                } else {
-                    double farePerMin = Fare.BIKE_RATE_PER_HOUR / 60;
-                    double payingDuration = duration - freeDuration;
-                    double fare = payingDuration * farePerMin;
-                    if (discount) {
-                        double discountedFare = fare * 95 / 100;
-                        ticket.setPrice(discountedFare);
-                    } else {
-                        ticket.setPrice(fare);
-                    }
-                    break;
-                }
-            }
+        long fare = calculateFareInCents(ticket.getInTime().getTime(), ticket.getOutTime().getTime(),
+                ticket.getParkingSpot().getParkingType().ordinal(), discount);
+        ticket.setPriceInCents(fare);
+        CALCULATE_FARE_METRICS.record(start);
+    }
+
+    // Allocation-free fare in cents, rounded half up: the first 30 minutes are free, then the hourly rate of the
+    // parking type is charged to the millisecond, minus 5% for recurring users
+    public long calculateFareInCents(long inTimeMillis, long outTimeMillis, int parkingTypeOrdinal, boolean discount) {
+        if (outTimeMillis < inTimeMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect:" + outTimeMillis);
+        }
+        long payingMillis = outTimeMillis - inTimeMillis - FREE_DURATION_MILLIS;
+        if (payingMillis <= 0) {
+            return 0;
+        }
+        long numerator = payingMillis * RATE_CENTS_PER_HOUR[parkingTypeOrdinal] * (discount ? DISCOUNT_PERCENT : 100);
+        long denominator = MILLIS_PER_HOUR * 100;
+        return (numerator + denominator / 2) / denominator;
+    }
+
+    // Fares of rows [from, to[ of a batch of closed tickets, written to pricesInCents at the same rows
+    public void calculateFares(TicketBatch batch, int from, int to, long[] pricesInCents) {
+        for (int row = from; row < to; row++) {
+            pricesInCents[row] = calculateFareInCents(batch.getInTime(row), batch.getOutTime(row),
+                    batch.getParkingTypeOrdinal(row), batch.isRecurringUser(row));
         }
     }
 }
-
@@ -1,11 +1,12 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingStorage;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+
 public class InteractiveShell {
 
 //    private static boolean testingMode = false; // Add a flag for testing.
@@ -22,9 +23,15 @@ public class InteractiveShell {
 
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingStorage storage;
+        try {
+            storage = ParkingStorage.fromSystemProperties();
+        } catch (IOException e) {
+            logger.error("Unable to open the parking storage", e);
+            return;
+        }
+        ParkingService parkingService = new ParkingService(inputReaderUtil, storage.getParkingSpotRepository(),
+                storage.getTicketRepository());
 
         while(continueApp){
             loadMenu();
@@ -48,6 +55,7 @@ public class InteractiveShell {
                 default: System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
             }
         }
+        storage.close();
     }
 
     public static void loadMenu(){
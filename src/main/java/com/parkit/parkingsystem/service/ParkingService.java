@@ -1,77 +1,169 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.GateResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Clock;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
+    private static final OperationMetrics ENTRY_METRICS = Metrics.operation("ParkingService.enterVehicle");
+    private static final OperationMetrics EXIT_METRICS = Metrics.operation("ParkingService.exitVehicle");
 
     private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     private final InputReaderUtil inputReaderUtil;
-    private final ParkingSpotDAO parkingSpotDAO;
-    private final TicketDAO ticketDAO;
+    private final ParkingSpotRepository parkingSpotRepository;
+    private final TicketRepository ticketRepository;
+    private final int facilityId;
+    // Time of the console gates, replaced by the traffic simulator
+    private Clock clock = Clock.systemDefaultZone();
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO){
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotRepository, TicketRepository ticketRepository){
+        if(parkingSpotRepository.getFacilityId() != ticketRepository.getFacilityId()){
+            throw new IllegalArgumentException("Spots of facility " + parkingSpotRepository.getFacilityId()
+                    + " with tickets of facility " + ticketRepository.getFacilityId());
+        }
         this.inputReaderUtil = inputReaderUtil;
-        this.parkingSpotDAO = parkingSpotDAO;
-        this.ticketDAO = ticketDAO;
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.ticketRepository = ticketRepository;
+        this.facilityId = parkingSpotRepository.getFacilityId();
+    }
+
+    // For automated gates driving enterVehicle() and exitVehicle(), which never read from the console
+    public ParkingService(ParkingSpotRepository parkingSpotRepository, TicketRepository ticketRepository){
+        this(null, parkingSpotRepository, ticketRepository);
     }
 
     public void processIncomingVehicle() {
         try{
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
+            ParkingSpot parkingSpot = reserveParkingSpotIfAvailable();//the spot is already allotted to this lane
             if(parkingSpot !=null && parkingSpot.getId() > 0){
-                String vehicleRegNumber = getVehicleRegNumber();
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);//allot this parking space and mark its availability as false
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-                //ticket.setId(ticketID);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                int nbTicket = ticketDAO.getNbTicket(ticket.getVehicleRegNumber());
-                if(nbTicket >= 1) {
-                    System.out.println("Happy to see you again! As a recurring user of our parking, you will get a 5% rebate.");
+                String vehicleRegNumber;
+                try {
+                    vehicleRegNumber = getVehicleRegNumber();
+                } catch (Exception e) {
+                    releaseReservedSpot(parkingSpot);
+                    throw e;
+                }
+                //timed from the plate read, like the console exit, so the operator's typing is not counted
+                long start = System.nanoTime();
+                GateResult result = admitVehicle(parkingSpot, vehicleRegNumber, new Date(clock.millis()),
+                        CompletableFuture.completedFuture(ticketRepository.getNbTicket(vehicleRegNumber)));
+                record(ENTRY_METRICS, start, result);
+                if(result.isSuccess()){
+                    Ticket ticket = result.getTicket();
+                    if(result.isRecurringUser()) {
+                        System.out.println("Happy to see you again! As a recurring user of our parking, you will get a 5% rebate.");
+                    }
+                    System.out.println("Generated Ticket and saved in DB");
+                    System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
+                    System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ticket.getInTime());
                 }
-                ticketDAO.saveTicket(ticket);
+            }
+        }catch(Exception e){
+            logger.error("Unable to process incoming vehicle",e);
+        }
+    }
 
+    /**
+     * Lets a vehicle in without any console interaction: reserves a spot of the given type and opens its ticket.
+     * Safe to call concurrently from several gates.
+     */
+    public GateResult enterVehicle(String vehicleRegNumber, ParkingType parkingType, Date inTime) {
+        long start = System.nanoTime();
+        GateResult result = reserveAndAdmit(vehicleRegNumber, parkingType, inTime);
+        record(ENTRY_METRICS, start, result);
+        return result;
+    }
 
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
+    private GateResult reserveAndAdmit(String vehicleRegNumber, ParkingType parkingType, Date inTime) {
+        //the visit count does not depend on the spot, look it up while the spot is being reserved
+        CompletableFuture<Integer> nbTicket = ticketRepository.getNbTicketAsync(vehicleRegNumber);
+        ParkingSpot parkingSpot;
+        try{
+            parkingSpot = parkingSpotRepository.reserveNextAvailable(parkingType);
+        }catch(Exception e){
+            logger.error("Error reserving next available parking slot", e);
+            return GateResult.of(GateResult.Status.ERROR);
+        }
+        if(parkingSpot == null){
+            return GateResult.of(GateResult.Status.PARKING_FULL);
+        }
+        return admitVehicle(parkingSpot, vehicleRegNumber, inTime, nbTicket);
+    }
+
+    private GateResult admitVehicle(ParkingSpot parkingSpot, String vehicleRegNumber, Date inTime,
+                                    CompletableFuture<Integer> nbTicket) {
+        try{
+            Ticket ticket = new Ticket();
+            //ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+            ticket.setFacilityId(facilityId);
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(inTime);
+            ticket.setOutTime(null);
+            boolean recurringUser = nbTicket.join() >= 1;
+            if(!ticketRepository.saveTicket(ticket)){
+                logger.error("Unable to save the ticket of " + vehicleRegNumber);
+                releaseReservedSpot(parkingSpot);
+                return GateResult.of(GateResult.Status.ERROR);
             }
+            return GateResult.entered(ticket, recurringUser);
         }catch(Exception e){
             logger.error("Unable to process incoming vehicle",e);
+            releaseReservedSpot(parkingSpot);
+            return GateResult.of(GateResult.Status.ERROR);
         }
     }
 
+    private void releaseReservedSpot(ParkingSpot parkingSpot) {
+        parkingSpot.setAvailable(true);
+        parkingSpotRepository.updateParking(parkingSpot);//give the reserved spot back
+    }
+
     private String getVehicleRegNumber() throws Exception {
         System.out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
+    private ParkingSpot reserveParkingSpotIfAvailable(){
+        ParkingSpot parkingSpot = null;
+        try{
+            ParkingType parkingType = getVehicleType();
+            parkingSpot = parkingSpotRepository.reserveNextAvailable(parkingType);
+            if(parkingSpot == null){
+                System.out.println("Apologies, our parking is full. Try again later!");
+            }
+        }catch(IllegalArgumentException ie){
+            logger.error("Error parsing user input for type of vehicle", ie);
+        }catch(Exception e){
+            logger.error("Error reserving next available parking slot", e);
+        }
+        return parkingSpot;
+    }
+
     public ParkingSpot getNextParkingNumberIfAvailable(){
         int parkingNumber=0;
         ParkingSpot parkingSpot = null;
         try{
             ParkingType parkingType = getVehicleType();
-            parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+            parkingNumber = parkingSpotRepository.getNextAvailableSlot(parkingType);
             if(parkingNumber > 0){
-                parkingSpot = new ParkingSpot(parkingNumber,parkingType, true);
+                parkingSpot = new ParkingSpot(facilityId, parkingNumber,parkingType, true);
             }else{
                 System.out.println("Apologies, our parking is full. Try again later!");
             }
@@ -106,17 +198,11 @@ public class ParkingService {
     public void processExitingVehicle() {
         try{
             String vehicleRegNumber = getVehicleRegNumber();
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-            int nbTicket = ticketDAO.getNbTicket(ticket.getVehicleRegNumber());
-            fareCalculatorService.calculateFare(ticket, nbTicket > 1);
-            if(ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
+            GateResult result = exitVehicle(vehicleRegNumber, new Date(clock.millis()));
+            if(result.isSuccess()) {
+                Ticket ticket = result.getTicket();
                 System.out.println("Please pay the parking fare:" + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
+                System.out.println("Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + ticket.getOutTime());
             }else{
                 System.out.println("Unable to update ticket information. Error occurred");
             }
@@ -125,6 +211,54 @@ public class ParkingService {
         }
     }
 
+    /**
+     * Lets a vehicle out without any console interaction: closes its open ticket, prices it and frees its spot.
+     * Safe to call concurrently from several gates.
+     */
+    public GateResult exitVehicle(String vehicleRegNumber, Date outTime) {
+        long start = System.nanoTime();
+        GateResult result = closeAndRelease(vehicleRegNumber, outTime);
+        record(EXIT_METRICS, start, result);
+        return result;
+    }
+
+    private GateResult closeAndRelease(String vehicleRegNumber, Date outTime) {
+        try{
+            boolean[] recurringUser = new boolean[1];
+            Ticket ticket = ticketRepository.closeTicket(vehicleRegNumber, outTime, (openTicket, nbTicket) -> {
+                recurringUser[0] = nbTicket > 1;
+                fareCalculatorService.calculateFare(openTicket, recurringUser[0]);
+            });
+            if(ticket == null) {
+                return GateResult.of(GateResult.Status.TICKET_NOT_CLOSED);
+            }
+            parkingSpotRepository.spotReleased(ticket.getParkingSpot());
+            return GateResult.exited(ticket, recurringUser[0]);
+        }catch(Exception e){
+            logger.error("Unable to process exiting vehicle",e);
+            return GateResult.of(GateResult.Status.ERROR);
+        }
+    }
+
+    private static void record(OperationMetrics metrics, long start, GateResult result) {
+        metrics.record(start);
+        if(result.getStatus() == GateResult.Status.ERROR){
+            metrics.recordFailure();
+        }
+    }
+
+    public int getFacilityId() {
+        return facilityId;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
     public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
         ParkingService.fareCalculatorService = fareCalculatorService;
     }
@@ -0,0 +1,49 @@
+package com.parkit.parkingsystem.service;
+
+public class ReRatingReport {
+
+    private final long rowsRead;
+    private final long rowsUpdated;
+    private final long skippedRows;
+    private final long failedChunks;
+    private final long elapsedMillis;
+
+    public ReRatingReport(long rowsRead, long rowsUpdated, long skippedRows, long failedChunks, long elapsedMillis) {
+        this.rowsRead = rowsRead;
+        this.rowsUpdated = rowsUpdated;
+        this.skippedRows = skippedRows;
+        this.failedChunks = failedChunks;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsUpdated() {
+        return rowsUpdated;
+    }
+
+    // Tickets that could not be priced and kept their price
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    public long getFailedChunks() {
+        return failedChunks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rowsRead : rowsRead * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Re-rated " + rowsRead + " tickets (" + rowsUpdated + " price changes, " + skippedRows + " skipped, "
+                + failedChunks + " failed chunks) in " + elapsedMillis + " ms: " + Math.round(getRowsPerSecond()) + " rows/s";
+    }
+}
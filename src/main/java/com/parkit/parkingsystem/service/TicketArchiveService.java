@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the tickets closed more than a given number of days ago from the ticket table to ticket_archive, so that
+ * the table the gates work on only holds recent tickets. Tickets are moved in chunks of consecutive ids, each in
+ * its own short transaction, with a pause between chunks so that the row locks never hold up the gates for long.
+ * An interrupted run loses nothing: the next one starts again from the oldest ticket left.
+ */
+public class TicketArchiveService {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiveService");
+
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final long DEFAULT_PAUSE_MILLIS = 50;
+
+    private final TicketDAO ticketDAO;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    public TicketArchiveService(TicketDAO ticketDAO) {
+        this(ticketDAO, Integer.getInteger("parkit.archive.chunkSize", DEFAULT_CHUNK_SIZE),
+                Long.getLong("parkit.archive.pauseMillis", DEFAULT_PAUSE_MILLIS));
+    }
+
+    public TicketArchiveService(TicketDAO ticketDAO, int chunkSize, long pauseMillis) {
+        this.ticketDAO = ticketDAO;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    // Returns the number of archived tickets
+    public long archiveTicketsClosedBefore(Date closedBefore) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        if (!ticketDAO.addArchivePartitions(closedBefore)) {
+            logger.error("Ticket archive partitions missing, archival stopped");
+            return 0;
+        }
+        long archived = 0;
+        int afterId = 0;
+        while (true) {
+            int[] ids = ticketDAO.getTicketIdsToArchive(closedBefore, afterId, chunkSize);
+            if (ids == null) {
+                logger.error("Archival stopped after ticket " + afterId);
+                break;
+            }
+            if (ids.length == 0) {
+                break;
+            }
+            int moved = ticketDAO.archiveTickets(ids[0], ids[ids.length - 1], closedBefore);
+            if (moved < 0) {
+                logger.error("Archival stopped after ticket " + afterId);
+                break;
+            }
+            archived += moved;
+            afterId = ids[ids.length - 1];
+            if (ids.length < chunkSize) {
+                break;
+            }
+            //let the gates take the locks between two chunks
+            TimeUnit.MILLISECONDS.sleep(pauseMillis);
+        }
+        logger.info("Archived " + archived + " tickets closed before " + closedBefore + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return archived;
+    }
+
+    public long archiveTicketsClosedDaysAgo(int days) throws InterruptedException {
+        return archiveTicketsClosedBefore(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days)));
+    }
+}
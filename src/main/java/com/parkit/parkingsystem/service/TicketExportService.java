@@ -0,0 +1,215 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.TicketBatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the tickets closed in a period to a file, for finance reports that should not query the ticket table.
+ * Tickets are streamed in {@link TicketBatch} chunks and written one chunk at a time, so memory does not depend on
+ * the number of tickets. A file ending in .csv.gz gets gzipped CSV, any other name a {@link ColumnarTicketFile}.
+ * <p>
+ * After each chunk the file is forced to disk and a checkpoint next to it records the last exported id and the
+ * file length. A resumed export truncates the file to that length and continues after that id.
+ */
+public class TicketExportService {
+
+    private static final Logger logger = LogManager.getLogger("TicketExportService");
+
+    private static final int DEFAULT_CHUNK_SIZE = 10000;
+    private static final String CSV_HEADER = "id,parking_number,parking_type,vehicle_reg_number,in_time,out_time,price,recurring_user\n";
+
+    private final TicketDAO ticketDAO;
+    private final int chunkSize;
+
+    public TicketExportService(TicketDAO ticketDAO) {
+        this(ticketDAO, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TicketExportService(TicketDAO ticketDAO, int chunkSize) {
+        this.ticketDAO = ticketDAO;
+        this.chunkSize = chunkSize;
+    }
+
+    public static Path checkpointOf(Path output) {
+        return output.resolveSibling(output.getFileName() + ".checkpoint");
+    }
+
+    // Returns the number of tickets written by this run
+    public long export(Date from, Date to, Path output, boolean resume) throws IOException, SQLException {
+        boolean csv = output.getFileName().toString().endsWith(".csv.gz");
+        Path checkpoint = checkpointOf(output);
+        Properties state = resume && Files.exists(checkpoint) ? readCheckpoint(checkpoint) : null;
+        if (state != null && (Long.parseLong(state.getProperty("from")) != from.getTime()
+                || Long.parseLong(state.getProperty("to")) != to.getTime())) {
+            throw new IllegalArgumentException("The checkpoint of " + output + " is for another period");
+        }
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ExportRun run = new ExportRun(channel, csv, checkpoint, from, to);
+            if (state != null) {
+                run.lastId = Integer.parseInt(state.getProperty("lastId"));
+                run.totalRows = Long.parseLong(state.getProperty("rows"));
+                channel.truncate(Long.parseLong(state.getProperty("length")));
+                channel.position(channel.size());
+                logger.info("Resuming the export of " + output + " after ticket " + run.lastId);
+            } else {
+                channel.truncate(0);
+                run.writeHeader();
+            }
+            try {
+                ticketDAO.streamClosedTicketBatches(from, to, run.lastId, chunkSize, run);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            logger.info("Exported " + run.rows + " tickets to " + output + " in " + (System.currentTimeMillis() - start)
+                    + " ms, " + run.totalRows + " in the file");
+            return run.rows;
+        }
+    }
+
+    private static Properties readCheckpoint(Path checkpoint) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(checkpoint)) {
+            state.load(in);
+        }
+        return state;
+    }
+
+    private class ExportRun implements Consumer<TicketBatch> {
+
+        private final FileChannel channel;
+        private final boolean csv;
+        private final Path checkpoint;
+        private final Date from;
+        private final Date to;
+        private final ColumnarTicketFile columnarFile = new ColumnarTicketFile();
+        private final StringBuilder lines = new StringBuilder();
+        private int lastId;
+        private long rows;
+        private long totalRows;
+
+        private ExportRun(FileChannel channel, boolean csv, Path checkpoint, Date from, Date to) {
+            this.channel = channel;
+            this.csv = csv;
+            this.checkpoint = checkpoint;
+            this.from = from;
+            this.to = to;
+        }
+
+        private void writeHeader() throws IOException {
+            if (csv) {
+                writeGzipMember(CSV_HEADER);
+            } else {
+                ColumnarTicketFile.writeHeader(channel);
+            }
+            saveCheckpoint();
+        }
+
+        @Override
+        public void accept(TicketBatch batch) {
+            try {
+                if (csv) {
+                    lines.setLength(0);
+                    for (int row = 0; row < batch.size(); row++) {
+                        appendCsvLine(batch, row);
+                    }
+                    writeGzipMember(lines);
+                } else {
+                    columnarFile.writeRowGroup(channel, batch);
+                }
+                lastId = batch.getId(batch.size() - 1);
+                rows += batch.size();
+                totalRows += batch.size();
+                saveCheckpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void appendCsvLine(TicketBatch batch, int row) {
+            long price = batch.getPriceInCents(row);
+            lines.append(batch.getId(row)).append(',')
+                    .append(batch.getParkingNumber(row)).append(',')
+                    .append(batch.getParkingType(row)).append(',');
+            appendCsvField(batch.getVehicleRegNumber(row));
+            lines.append(',').append(Instant.ofEpochMilli(batch.getInTime(row))).append(',')
+                    .append(Instant.ofEpochMilli(batch.getOutTime(row))).append(',')
+                    .append(price / 100).append('.').append(price % 100 < 10 ? "0" : "").append(price % 100).append(',')
+                    .append(batch.isRecurringUser(row)).append('\n');
+        }
+
+        private void appendCsvField(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                lines.append(value);
+            } else {
+                lines.append('"').append(value.replace("\"", "\"\"")).append('"');
+            }
+        }
+
+        // Each chunk is a complete gzip member, so the file is valid gzip at every checkpoint
+        private void writeGzipMember(CharSequence text) throws IOException {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(new ChannelOutputStream(channel), 1 << 16)) {
+                gzip.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void saveCheckpoint() throws IOException {
+            //the data must be on disk before the checkpoint that points past it
+            channel.force(false);
+            Properties state = new Properties();
+            state.setProperty("from", Long.toString(from.getTime()));
+            state.setProperty("to", Long.toString(to.getTime()));
+            state.setProperty("lastId", Integer.toString(lastId));
+            state.setProperty("rows", Long.toString(totalRows));
+            state.setProperty("length", Long.toString(channel.position()));
+            Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                state.store(out, null);
+            }
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Writes to the channel and leaves it open when closed
+    private static class ChannelOutputStream extends OutputStream {
+
+        private final FileChannel channel;
+
+        private ChannelOutputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
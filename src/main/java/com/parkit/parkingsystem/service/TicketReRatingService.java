@@ -0,0 +1,154 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.TicketBatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Recomputes the price of every closed ticket with the current tariffs. Tickets are streamed from the database in
+ * {@link TicketBatch} chunks, priced in parallel, and only the changed prices are written back, one batched
+ * transaction per chunk, on a writer thread so that reading and writing overlap.
+ */
+public class TicketReRatingService {
+
+    private static final Logger logger = LogManager.getLogger("TicketReRatingService");
+
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+    // Rows priced per parallel task
+    private static final int FARE_SLICE_SIZE = 1024;
+
+    private final TicketDAO ticketDAO;
+    private final FareCalculatorService fareCalculatorService;
+    private final int chunkSize;
+
+    public TicketReRatingService(TicketDAO ticketDAO, FareCalculatorService fareCalculatorService) {
+        this(ticketDAO, fareCalculatorService, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TicketReRatingService(TicketDAO ticketDAO, FareCalculatorService fareCalculatorService, int chunkSize) {
+        this.ticketDAO = ticketDAO;
+        this.fareCalculatorService = fareCalculatorService;
+        this.chunkSize = chunkSize;
+    }
+
+    public ReRatingReport reRateClosedTickets() {
+        long start = System.currentTimeMillis();
+        ReRatingRun run = new ReRatingRun();
+        long rowsRead = 0;
+        try {
+            rowsRead = ticketDAO.streamClosedTicketBatches(chunkSize, run);
+        } catch (SQLException e) {
+            logger.error("Error reading closed tickets, re-rating stopped", e);
+            run.failedChunks.incrementAndGet();
+        } catch (IllegalStateException e) {
+            logger.error("Re-rating interrupted", e);
+        } finally {
+            run.awaitWrites();
+        }
+        //rows of an unknown parking type never reach the batches
+        long skippedRows = run.unpricedRows.get() + Math.max(0, rowsRead - run.rowsPriced.get());
+        ReRatingReport report = new ReRatingReport(rowsRead, run.rowsUpdated.get(), skippedRows,
+                run.failedChunks.get(), System.currentTimeMillis() - start);
+        logger.info(report.toString());
+        return report;
+    }
+
+    private class ReRatingRun implements Consumer<TicketBatch> {
+
+        private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-rerating-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final Semaphore chunksInFlight = new Semaphore(MAX_CHUNKS_IN_FLIGHT);
+        private final AtomicLong rowsUpdated = new AtomicLong();
+        private final AtomicLong failedChunks = new AtomicLong();
+        private final AtomicLong rowsPriced = new AtomicLong();
+        private final AtomicLong unpricedRows = new AtomicLong();
+
+        @Override
+        public void accept(TicketBatch batch) {
+            try {
+                chunksInFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Re-rating interrupted", e);
+            }
+            long[] newPricesInCents = calculateFares(batch);
+            writer.execute(() -> {
+                try {
+                    write(batch, newPricesInCents);
+                } finally {
+                    chunksInFlight.release();
+                }
+            });
+        }
+
+        private long[] calculateFares(TicketBatch batch) {
+            long[] newPricesInCents = new long[batch.size()];
+            int slices = (batch.size() + FARE_SLICE_SIZE - 1) / FARE_SLICE_SIZE;
+            IntStream.range(0, slices).parallel().forEach(slice -> calculateFares(batch,
+                    slice * FARE_SLICE_SIZE, Math.min(batch.size(), (slice + 1) * FARE_SLICE_SIZE), newPricesInCents));
+            rowsPriced.addAndGet(batch.size());
+            return newPricesInCents;
+        }
+
+        // A row that cannot be priced, such as an out time before the in time, keeps its price and is counted
+        private void calculateFares(TicketBatch batch, int from, int to, long[] newPricesInCents) {
+            try {
+                fareCalculatorService.calculateFares(batch, from, to, newPricesInCents);
+            } catch (IllegalArgumentException e) {
+                for (int row = from; row < to; row++) {
+                    try {
+                        fareCalculatorService.calculateFares(batch, row, row + 1, newPricesInCents);
+                    } catch (IllegalArgumentException rowError) {
+                        newPricesInCents[row] = batch.getPriceInCents(row);
+                        unpricedRows.incrementAndGet();
+                        logger.warn("Ticket " + batch.getId(row) + " skipped: " + rowError.getMessage());
+                    }
+                }
+            }
+        }
+
+        // Writes the tickets whose price changed, compacted at the start of two arrays
+        private void write(TicketBatch batch, long[] newPricesInCents) {
+            int[] ids = new int[batch.size()];
+            int changed = 0;
+            for (int row = 0; row < batch.size(); row++) {
+                if (newPricesInCents[row] != batch.getPriceInCents(row)) {
+                    ids[changed] = batch.getId(row);
+                    newPricesInCents[changed] = newPricesInCents[row];
+                    changed++;
+                }
+            }
+            if (changed == 0) {
+                return;
+            }
+            if (ticketDAO.updateTicketPrices(ids, newPricesInCents, changed)) {
+                rowsUpdated.addAndGet(changed);
+            } else {
+                failedChunks.incrementAndGet();
+            }
+        }
+
+        void awaitWrites() {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.simulation;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * A vehicle arriving at an entry gate or leaving through an exit gate at a given simulated time (epoch millis).
+ */
+public class GateEvent implements Comparable<GateEvent> {
+
+    private final long time;
+    private final boolean entry;
+    private final String vehicleRegNumber;
+    private final ParkingType parkingType;
+
+    private GateEvent(long time, boolean entry, String vehicleRegNumber, ParkingType parkingType) {
+        this.time = time;
+        this.entry = entry;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingType = parkingType;
+    }
+
+    public static GateEvent entry(long time, String vehicleRegNumber, ParkingType parkingType) {
+        return new GateEvent(time, true, vehicleRegNumber, parkingType);
+    }
+
+    public static GateEvent exit(long time, String vehicleRegNumber, ParkingType parkingType) {
+        return new GateEvent(time, false, vehicleRegNumber, parkingType);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public boolean isEntry() {
+        return entry;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    // By time, exits first at the same millisecond so that the spot they free can be taken
+    @Override
+    public int compareTo(GateEvent other) {
+        if (time != other.time) {
+            return Long.compare(time, other.time);
+        }
+        return Boolean.compare(entry, other.entry);
+    }
+
+    @Override
+    public String toString() {
+        return (entry ? "entry " : "exit ") + vehicleRegNumber + " at " + time;
+    }
+}
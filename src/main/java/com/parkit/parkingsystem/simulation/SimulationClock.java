@@ -0,0 +1,73 @@
+package com.parkit.parkingsystem.simulation;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulated time for ParkingService. With a time compression factor, it runs from the start time that many times
+ * faster than the wall clock (60 plays an hour in a minute). With a factor of 0 it stands still between the
+ * advanceTo() calls of the simulator, which then replays events as fast as the gates take them.
+ */
+public class SimulationClock extends Clock {
+
+    private final long startMillis;
+    private final double timeCompression;
+    private final long startNanos;
+    private final AtomicLong currentMillis;
+    private final ZoneId zone;
+
+    public SimulationClock(long startMillis, double timeCompression) {
+        this(startMillis, timeCompression, System.nanoTime(), new AtomicLong(startMillis), ZoneId.systemDefault());
+    }
+
+    private SimulationClock(long startMillis, double timeCompression, long startNanos, AtomicLong currentMillis,
+                            ZoneId zone) {
+        this.startMillis = startMillis;
+        this.timeCompression = timeCompression;
+        this.startNanos = startNanos;
+        this.currentMillis = currentMillis;
+        this.zone = zone;
+    }
+
+    public boolean isCompressed() {
+        return timeCompression > 0;
+    }
+
+    // Moves a stopped clock forward, never backward
+    public void advanceTo(long millis) {
+        currentMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    // Wall clock nanoseconds until the clock reaches the given time, 0 for a stopped clock
+    public long nanosUntil(long millis) {
+        if (!isCompressed()) {
+            return 0;
+        }
+        return Math.max(0, (long) ((millis - millis()) * 1_000_000 / timeCompression));
+    }
+
+    @Override
+    public long millis() {
+        if (!isCompressed()) {
+            return currentMillis.get();
+        }
+        return startMillis + (long) ((System.nanoTime() - startNanos) / 1_000_000.0 * timeCompression);
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulationClock(startMillis, timeCompression, startNanos, currentMillis, zone);
+    }
+}
@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem.simulation;
+
+import com.parkit.parkingsystem.metrics.OperationSnapshot;
+
+public class SimulationReport {
+
+    private final long events;
+    private final OperationSnapshot entries;
+    private final OperationSnapshot exits;
+    private final long parkingFull;
+    private final long ticketsNotClosed;
+    private final long skippedEvents;
+    private final long allocationConflicts;
+    private final long fareTotalInCents;
+    private final long discountedExits;
+    private final long maxLagMillis;
+    private final long elapsedMillis;
+
+    public SimulationReport(long events, OperationSnapshot entries, OperationSnapshot exits, long parkingFull,
+                            long ticketsNotClosed, long skippedEvents, long allocationConflicts,
+                            long fareTotalInCents, long discountedExits, long maxLagMillis, long elapsedMillis) {
+        this.events = events;
+        this.entries = entries;
+        this.exits = exits;
+        this.parkingFull = parkingFull;
+        this.ticketsNotClosed = ticketsNotClosed;
+        this.skippedEvents = skippedEvents;
+        this.allocationConflicts = allocationConflicts;
+        this.fareTotalInCents = fareTotalInCents;
+        this.discountedExits = discountedExits;
+        this.maxLagMillis = maxLagMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public OperationSnapshot getEntries() {
+        return entries;
+    }
+
+    public OperationSnapshot getExits() {
+        return exits;
+    }
+
+    public long getParkingFull() {
+        return parkingFull;
+    }
+
+    public long getTicketsNotClosed() {
+        return ticketsNotClosed;
+    }
+
+    // Exits of vehicles that are not parked and entries of vehicles already parked
+    public long getSkippedEvents() {
+        return skippedEvents;
+    }
+
+    // Spots handed to a vehicle while another one was still parked on them
+    public long getAllocationConflicts() {
+        return allocationConflicts;
+    }
+
+    public long getFareTotalInCents() {
+        return fareTotalInCents;
+    }
+
+    public long getDiscountedExits() {
+        return discountedExits;
+    }
+
+    // Simulated time by which the gates fell behind the event schedule, 0 without time compression
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedMillis == 0 ? events : events * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Simulated " + events + " gate events in " + elapsedMillis + " ms: " + Math.round(getEventsPerSecond())
+                + " events/s, " + parkingFull + " refused (parking full), " + ticketsNotClosed
+                + " tickets not closed, " + skippedEvents + " skipped events, " + allocationConflicts
+                + " allocation conflicts, fares " + String.format("%.2f", fareTotalInCents / 100.0) + " ("
+                + discountedExits + " discounted exits), max lag " + maxLagMillis + " ms"
+                + System.lineSeparator() + entries + System.lineSeparator() + exits;
+    }
+}
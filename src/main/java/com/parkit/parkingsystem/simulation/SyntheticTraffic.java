@@ -0,0 +1,117 @@
+package com.parkit.parkingsystem.simulation;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the gate events of a synthetic period: arrivals follow a Poisson process, each vehicle stays for a
+ * dwell time drawn from the chosen distribution, and a share of the arrivals are plates seen earlier in the
+ * period, which makes them recurring users. The same seed gives the same events.
+ */
+public class SyntheticTraffic {
+
+    // Plates of simulated vehicles, kept apart from real plates and within the 10 characters of the plate columns
+    static final String SIMULATED_PLATE = "SIM%06d";
+
+    public enum DwellTimeDistribution {
+        FIXED,
+        EXPONENTIAL,
+        // The mean dwell time is the median, spread by the dwell time sigma
+        LOG_NORMAL
+    }
+
+    private final Random random;
+    private long startMillis = System.currentTimeMillis();
+    private long durationMillis = TimeUnit.HOURS.toMillis(1);
+    private double arrivalsPerHour = 600;
+    private DwellTimeDistribution dwellTimeDistribution = DwellTimeDistribution.LOG_NORMAL;
+    private long meanDwellMillis = TimeUnit.HOURS.toMillis(2);
+    private double dwellTimeSigma = 0.8;
+    private double bikeRatio = 0.1;
+    private double plateReuseRatio = 0.3;
+
+    public SyntheticTraffic(long seed) {
+        this.random = new Random(seed);
+    }
+
+    // Events sorted by time: every arrival of the period and the exit of each vehicle, possibly after the period
+    public List<GateEvent> generate() {
+        List<GateEvent> events = new ArrayList<>();
+        List<GateEvent> departures = new ArrayList<>();
+        PriorityQueue<GateEvent> parked = new PriorityQueue<>();
+        int newPlates = 0;
+        double arrivalsPerMilli = arrivalsPerHour / TimeUnit.HOURS.toMillis(1);
+        long time = startMillis;
+        while (true) {
+            time += (long) Math.ceil(-Math.log(1 - random.nextDouble()) / arrivalsPerMilli);
+            if (time >= startMillis + durationMillis) {
+                break;
+            }
+            //only plates that already left can come back
+            while (!parked.isEmpty() && parked.peek().getTime() <= time) {
+                departures.add(parked.poll());
+            }
+            String vehicleRegNumber;
+            ParkingType parkingType;
+            if (!departures.isEmpty() && random.nextDouble() < plateReuseRatio) {
+                int index = random.nextInt(departures.size());
+                Collections.swap(departures, index, departures.size() - 1);
+                GateEvent departure = departures.remove(departures.size() - 1);
+                vehicleRegNumber = departure.getVehicleRegNumber();
+                parkingType = departure.getParkingType();
+            } else {
+                vehicleRegNumber = String.format(SIMULATED_PLATE, ++newPlates);
+                parkingType = random.nextDouble() < bikeRatio ? ParkingType.BIKE : ParkingType.CAR;
+            }
+            GateEvent exit = GateEvent.exit(time + nextDwellMillis(), vehicleRegNumber, parkingType);
+            events.add(GateEvent.entry(time, vehicleRegNumber, parkingType));
+            events.add(exit);
+            parked.add(exit);
+        }
+        Collections.sort(events);
+        return events;
+    }
+
+    private long nextDwellMillis() {
+        switch (dwellTimeDistribution) {
+            case EXPONENTIAL:
+                return Math.max(1, (long) (-Math.log(1 - random.nextDouble()) * meanDwellMillis));
+            case LOG_NORMAL:
+                return Math.max(1, (long) (meanDwellMillis * Math.exp(dwellTimeSigma * random.nextGaussian())));
+            default:
+                return meanDwellMillis;
+        }
+    }
+
+    public void setStartMillis(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public void setArrivalsPerHour(double arrivalsPerHour) {
+        this.arrivalsPerHour = arrivalsPerHour;
+    }
+
+    public void setDwellTime(DwellTimeDistribution distribution, long meanDwellMillis, double sigma) {
+        this.dwellTimeDistribution = distribution;
+        this.meanDwellMillis = meanDwellMillis;
+        this.dwellTimeSigma = sigma;
+    }
+
+    public void setBikeRatio(double bikeRatio) {
+        this.bikeRatio = bikeRatio;
+    }
+
+    public void setPlateReuseRatio(double plateReuseRatio) {
+        this.plateReuseRatio = plateReuseRatio;
+    }
+}
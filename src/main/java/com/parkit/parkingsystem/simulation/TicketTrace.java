@@ -0,0 +1,40 @@
+package com.parkit.parkingsystem.simulation;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.TicketBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Turns the closed tickets of a past period back into the gate events that produced them, so that a real day of
+ * traffic can be replayed against a test car park. Each plate is replaced by a simulated one, so that the replayed
+ * tickets never mix with the real tickets of the plate.
+ */
+public class TicketTrace {
+
+    private TicketTrace() {
+    }
+
+    // Events sorted by time, null when the tickets could not be read
+    public static List<GateEvent> load(TicketDAO ticketDAO, Date from, Date to) {
+        TicketBatch batch = ticketDAO.loadClosedTickets(from, to);
+        if (batch == null) {
+            return null;
+        }
+        return toEvents(batch);
+    }
+
+    public static List<GateEvent> toEvents(TicketBatch batch) {
+        List<GateEvent> events = new ArrayList<>(batch.size() * 2);
+        for (int row = 0; row < batch.size(); row++) {
+            String vehicleRegNumber = String.format(SyntheticTraffic.SIMULATED_PLATE, batch.getPlateId(row) + 1);
+            events.add(GateEvent.entry(batch.getInTime(row), vehicleRegNumber, batch.getParkingType(row)));
+            events.add(GateEvent.exit(batch.getOutTime(row), vehicleRegNumber, batch.getParkingType(row)));
+        }
+        Collections.sort(events);
+        return events;
+    }
+}
@@ -0,0 +1,194 @@
+package com.parkit.parkingsystem.simulation;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.OperationSnapshot;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays gate events against a ParkingService through a number of concurrent lanes, each a single thread like a
+ * physical gate. All the events of a vehicle go through the same lane, so its exit never overtakes its entry.
+ * The service runs on a {@link SimulationClock}: with a time compression factor, events are dispatched when the
+ * clock reaches them and the gates stamp tickets with the clock, so a slow gate shows as lag; with a factor of 0
+ * events are dispatched as fast as the lanes take them and tickets carry the event times.
+ */
+public class TrafficSimulator {
+
+    private static final Logger logger = LogManager.getLogger("TrafficSimulator");
+
+    private final ParkingService parkingService;
+    private final int lanes;
+    private final double timeCompression;
+
+    public TrafficSimulator(ParkingService parkingService, int lanes, double timeCompression) {
+        this.parkingService = parkingService;
+        this.lanes = lanes;
+        this.timeCompression = timeCompression;
+    }
+
+    public SimulationReport run(List<GateEvent> events) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        SimulationClock clock = new SimulationClock(events.isEmpty() ? start : events.get(0).getTime(),
+                timeCompression);
+        Clock previousClock = parkingService.getClock();
+        parkingService.setClock(clock);
+        SimulationRun run = new SimulationRun(clock);
+        ExecutorService[] gates = new ExecutorService[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            String name = "gate-lane-" + lane;
+            gates[lane] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            for (GateEvent event : events) {
+                TimeUnit.NANOSECONDS.sleep(clock.nanosUntil(event.getTime()));
+                int lane = Math.floorMod(event.getVehicleRegNumber().hashCode(), lanes);
+                gates[lane].execute(() -> run.play(lane, event));
+            }
+        } finally {
+            for (ExecutorService gate : gates) {
+                gate.shutdown();
+            }
+            for (ExecutorService gate : gates) {
+                gate.awaitTermination(1, TimeUnit.HOURS);
+            }
+            parkingService.setClock(previousClock);
+        }
+        SimulationReport report = run.report(events.size(), System.currentTimeMillis() - start);
+        logger.info(report);
+        return report;
+    }
+
+    private class SimulationRun {
+
+        private final SimulationClock clock;
+        // Per lane, only touched by the thread of the lane
+        private final List<Map<String, ParkingSpot>> parkedVehicles;
+        private final Map<ParkingSpot, String> occupiedSpots = new ConcurrentHashMap<>();
+        private final LatencyHistogram entryLatency = new LatencyHistogram();
+        private final LatencyHistogram exitLatency = new LatencyHistogram();
+        private final LongAdder entryErrors = new LongAdder();
+        private final LongAdder exitErrors = new LongAdder();
+        private final LongAdder parkingFull = new LongAdder();
+        private final LongAdder ticketsNotClosed = new LongAdder();
+        private final LongAdder skippedEvents = new LongAdder();
+        private final LongAdder allocationConflicts = new LongAdder();
+        private final LongAdder fareTotalInCents = new LongAdder();
+        private final LongAdder discountedExits = new LongAdder();
+        private volatile long maxLagMillis;
+
+        private SimulationRun(SimulationClock clock) {
+            this.clock = clock;
+            this.parkedVehicles = new ArrayList<>(lanes);
+            for (int lane = 0; lane < lanes; lane++) {
+                parkedVehicles.add(new HashMap<>());
+            }
+        }
+
+        private void play(int lane, GateEvent event) {
+            Date time;
+            if (clock.isCompressed()) {
+                time = new Date(clock.millis());
+                recordLag(time.getTime() - event.getTime());
+            } else {
+                clock.advanceTo(event.getTime());
+                time = new Date(event.getTime());
+            }
+            if (event.isEntry()) {
+                enter(parkedVehicles.get(lane), event, time);
+            } else {
+                exit(parkedVehicles.get(lane), event, time);
+            }
+        }
+
+        private void enter(Map<String, ParkingSpot> parked, GateEvent event, Date inTime) {
+            String vehicleRegNumber = event.getVehicleRegNumber();
+            if (parked.containsKey(vehicleRegNumber)) {
+                skippedEvents.increment();
+                return;
+            }
+            long start = System.nanoTime();
+            GateResult result = parkingService.enterVehicle(vehicleRegNumber, event.getParkingType(), inTime);
+            entryLatency.record(System.nanoTime() - start);
+            switch (result.getStatus()) {
+                case ENTERED:
+                    ParkingSpot spot = result.getParkingSpot();
+                    parked.put(vehicleRegNumber, spot);
+                    String otherVehicle = occupiedSpots.putIfAbsent(spot, vehicleRegNumber);
+                    if (otherVehicle != null) {
+                        allocationConflicts.increment();
+                        logger.warn("Spot " + spot.getId() + " given to " + vehicleRegNumber + " while "
+                                + otherVehicle + " is parked on it");
+                    }
+                    break;
+                case PARKING_FULL:
+                    parkingFull.increment();
+                    break;
+                default:
+                    entryErrors.increment();
+            }
+        }
+
+        private void exit(Map<String, ParkingSpot> parked, GateEvent event, Date outTime) {
+            String vehicleRegNumber = event.getVehicleRegNumber();
+            ParkingSpot spot = parked.remove(vehicleRegNumber);
+            if (spot == null) {
+                //refused at the entry, or its entry failed
+                skippedEvents.increment();
+                return;
+            }
+            //the spot can be handed out again as soon as exitVehicle() frees it
+            occupiedSpots.remove(spot, vehicleRegNumber);
+            long start = System.nanoTime();
+            GateResult result = parkingService.exitVehicle(vehicleRegNumber, outTime);
+            exitLatency.record(System.nanoTime() - start);
+            if (result.isSuccess()) {
+                fareTotalInCents.add(Math.round(result.getFare() * 100));
+                if (result.isRecurringUser()) {
+                    discountedExits.increment();
+                }
+                return;
+            }
+            //the vehicle is still parked on its spot
+            parked.put(vehicleRegNumber, spot);
+            occupiedSpots.putIfAbsent(spot, vehicleRegNumber);
+            if (result.getStatus() == GateResult.Status.TICKET_NOT_CLOSED) {
+                ticketsNotClosed.increment();
+            } else {
+                exitErrors.increment();
+            }
+        }
+
+        private synchronized void recordLag(long lagMillis) {
+            if (lagMillis > maxLagMillis) {
+                maxLagMillis = lagMillis;
+            }
+        }
+
+        private SimulationReport report(long events, long elapsedMillis) {
+            return new SimulationReport(events,
+                    new OperationSnapshot("entries", entryLatency.snapshot(), entryErrors.sum()),
+                    new OperationSnapshot("exits", exitLatency.snapshot(), exitErrors.sum()),
+                    parkingFull.sum(), ticketsNotClosed.sum(), skippedEvents.sum(), allocationConflicts.sum(),
+                    fareTotalInCents.sum(), discountedExits.sum(), maxLagMillis, elapsedMillis);
+        }
+    }
+}
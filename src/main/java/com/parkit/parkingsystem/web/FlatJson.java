@@ -0,0 +1,180 @@
+package com.parkit.parkingsystem.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the flat JSON objects exchanged with the gates: one level of string, number, boolean or null
+ * members, no nested objects or arrays.
+ */
+final class FlatJson {
+
+    private FlatJson() {
+    }
+
+    static Map<String, String> parse(String json) {
+        Parser parser = new Parser(json);
+        Map<String, String> members = new LinkedHashMap<>();
+        parser.expect('{');
+        if (parser.peek() == '}') {
+            parser.pos++;
+        } else {
+            do {
+                String name = parser.readString();
+                parser.expect(':');
+                members.put(name, parser.readValue());
+            } while (parser.next(',', '}') == ',');
+        }
+        if (parser.peek() != 0) {
+            throw new IllegalArgumentException("Unexpected content after JSON object at " + parser.pos);
+        }
+        return members;
+    }
+
+    static String write(Map<String, ?> members) {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, ?> member : members.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendString(json, member.getKey());
+            json.append(':');
+            Object value = member.getValue();
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                json.append(value);
+            } else {
+                appendString(json, value.toString());
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private static class Parser {
+
+        private final String json;
+        private int pos;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        char peek() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            return pos < json.length() ? json.charAt(pos) : 0;
+        }
+
+        void expect(char expected) {
+            if (peek() != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at " + pos);
+            }
+            pos++;
+        }
+
+        char next(char first, char second) {
+            char c = peek();
+            if (c != first && c != second) {
+                throw new IllegalArgumentException("Expected '" + first + "' or '" + second + "' at " + pos);
+            }
+            pos++;
+            return c;
+        }
+
+        String readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("Nested JSON values are not supported, at " + pos);
+            }
+            int start = pos;
+            while (pos < json.length() && ",} \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = json.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Missing value at " + start);
+            }
+            return "null".equals(literal) ? null : literal;
+        }
+
+        String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(pos++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            throw new IllegalArgumentException("Truncated unicode escape at " + pos);
+                        }
+                        value.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.parkit.parkingsystem.web;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP front end for the automated gates (ANPR cameras). Exposes JSON endpoints:
+ * <ul>
+ *     <li>POST /gates/entry {"vehicleRegNumber":"AB-123-CD","parkingType":"CAR","time":1700000000000}</li>
+ *     <li>POST /gates/exit {"vehicleRegNumber":"AB-123-CD","time":1700003600000}</li>
+ *     <li>GET /availability</li>
+ * </ul>
+ * "time" is optional and defaults to the time the event is received.
+ */
+public class GateHttpServer {
+
+    private static final Logger logger = LogManager.getLogger("GateHttpServer");
+
+    private static final int MAX_BODY_BYTES = 4096;
+
+    private final ParkingService parkingService;
+    private final ParkingSpotRepository parkingSpotRepository;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public GateHttpServer(ParkingService parkingService, ParkingSpotRepository parkingSpotRepository,
+                          InetSocketAddress address) throws IOException {
+        this.parkingService = parkingService;
+        this.parkingSpotRepository = parkingSpotRepository;
+        this.server = HttpServer.create(address, Integer.getInteger("parkit.http.backlog", 1024));
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/gates/entry", exchange -> handle(exchange, "POST", this::entry));
+        server.createContext("/gates/exit", exchange -> handle(exchange, "POST", this::exit));
+        server.createContext("/availability", exchange -> handle(exchange, "GET", request -> availability()));
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Gate HTTP server listening on port " + getPort());
+    }
+
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        logger.info("Gate HTTP server stopped");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Each request blocks on the database, so it gets its own virtual thread when the JVM has them (Java 21+),
+    // otherwise a thread of a bounded pool that pushes back on the accepting thread once its queue is full
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Handling gate requests on virtual threads");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Integer.getInteger("parkit.http.threads", 64);
+            logger.info("Virtual threads not available, handling gate requests on " + threads + " threads");
+            AtomicInteger threadCount = new AtomicInteger();
+            return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(threads * 16), runnable -> {
+                        Thread thread = new Thread(runnable, "gate-http-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    private Response entry(Map<String, String> request) {
+        String vehicleRegNumber = vehicleRegNumber(request);
+        String type = required(request, "parkingType");
+        ParkingType parkingType;
+        try {
+            parkingType = ParkingType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown parkingType " + type);
+        }
+        GateResult result = parkingService.enterVehicle(vehicleRegNumber, parkingType, eventTime(request));
+        return toResponse(result);
+    }
+
+    private Response exit(Map<String, String> request) {
+        String vehicleRegNumber = vehicleRegNumber(request);
+        GateResult result = parkingService.exitVehicle(vehicleRegNumber, eventTime(request));
+        return toResponse(result);
+    }
+
+    private Response availability() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        for (ParkingType parkingType : ParkingType.values()) {
+            int count = parkingSpotRepository.getAvailableSpotCount(parkingType);
+            if (count < 0) {
+                return Response.error(500, "Unable to read parking availability");
+            }
+            body.put(parkingType.name(), count);
+        }
+        return new Response(200, body);
+    }
+
+    private static Response toResponse(GateResult result) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", result.getStatus().name());
+        Ticket ticket = result.getTicket();
+        if (ticket != null) {
+            body.put("ticketId", ticket.getId());
+            body.put("facilityId", ticket.getFacilityId());
+            body.put("vehicleRegNumber", ticket.getVehicleRegNumber());
+            body.put("parkingNumber", ticket.getParkingSpot().getId());
+            body.put("parkingType", ticket.getParkingSpot().getParkingType().name());
+            body.put("inTime", ticket.getInTime() == null ? null : ticket.getInTime().getTime());
+            body.put("outTime", ticket.getOutTime() == null ? null : ticket.getOutTime().getTime());
+            body.put("fare", ticket.getPrice());
+            body.put("recurringUser", result.isRecurringUser());
+        }
+        switch (result.getStatus()) {
+            case ENTERED:
+                return new Response(201, body);
+            case EXITED:
+                return new Response(200, body);
+            case PARKING_FULL:
+                return new Response(409, body);
+            case TICKET_NOT_CLOSED:
+                return new Response(404, body);
+            default:
+                return new Response(500, body);
+        }
+    }
+
+    private static String required(Map<String, String> request, String name) {
+        String value = request.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value.trim();
+    }
+
+    // Trimmed, and no longer than the ticket table column it is stored in
+    private static String vehicleRegNumber(Map<String, String> request) {
+        String vehicleRegNumber = required(request, "vehicleRegNumber");
+        if (vehicleRegNumber.length() > DBConstants.VEHICLE_REG_NUMBER_MAX_LENGTH) {
+            throw new IllegalArgumentException("vehicleRegNumber longer than "
+                    + DBConstants.VEHICLE_REG_NUMBER_MAX_LENGTH + " characters");
+        }
+        return vehicleRegNumber;
+    }
+
+    private static Date eventTime(Map<String, String> request) {
+        String time = request.get("time");
+        if (time == null) {
+            return new Date();
+        }
+        try {
+            return new Date(Long.parseLong(time));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("time must be a number of milliseconds since the epoch");
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        Response response;
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                response = Response.error(405, "Method not allowed");
+            } else {
+                Map<String, String> request = "POST".equals(method)
+                        ? FlatJson.parse(readBody(exchange.getRequestBody()))
+                        : new LinkedHashMap<>();
+                response = endpoint.handle(request);
+            }
+        } catch (IllegalArgumentException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI(), e);
+            response = Response.error(500, "Internal error");
+        }
+        byte[] bytes = FlatJson.write(response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (body.size() + read > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private interface Endpoint {
+        Response handle(Map<String, String> request);
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final Map<String, Object> body;
+
+        Response(int status, Map<String, Object> body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response error(int status, String message) {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("error", message);
+            return new Response(status, body);
+        }
+    }
+}
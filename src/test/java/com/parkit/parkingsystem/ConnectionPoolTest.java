@@ -0,0 +1,211 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.ConnectionPoolSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private List<Connection> physicalConnections;
+    private List<PreparedStatement> physicalStatements;
+    private ConnectionPoolSettings settings;
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        physicalConnections = new ArrayList<>();
+        physicalStatements = new ArrayList<>();
+        settings = new ConnectionPoolSettings();
+        settings.setMinSize(0);
+        settings.setMaxSize(2);
+        settings.setBorrowTimeoutMillis(100);
+        settings.setEvictionIntervalMillis(60000);
+        connectionPool = new ConnectionPool("test", this::createPhysicalConnection, settings);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        connectionPool.close();
+    }
+
+    private Connection createPhysicalConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        lenient().when(connection.getAutoCommit()).thenReturn(true);
+        lenient().when(connection.isValid(anyInt())).thenReturn(true);
+        lenient().when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            physicalStatements.add(statement);
+            return statement;
+        });
+        physicalConnections.add(connection);
+        return connection;
+    }
+
+    @Test
+    public void borrow_afterClose_shouldReuseThePhysicalConnection() throws SQLException {
+        Connection first = connectionPool.borrow();
+        first.close();
+        Connection second = connectionPool.borrow();
+        second.close();
+
+        // Une seule connexion physique doit avoir été ouverte et elle ne doit jamais être fermée
+        assertEquals(1, physicalConnections.size());
+        verify(physicalConnections.get(0), never()).close();
+        assertEquals(1, connectionPool.getIdleCount());
+    }
+
+    @Test
+    public void borrow_whenPoolIsExhausted_shouldTimeOut() throws SQLException {
+        connectionPool.borrow();
+        connectionPool.borrow();
+
+        assertThrows(SQLTimeoutException.class, () -> connectionPool.borrow());
+        assertEquals(2, connectionPool.getActiveCount());
+    }
+
+    @Test
+    public void returnedConnection_shouldNotBeUsableAnymore() throws SQLException {
+        Connection connection = connectionPool.borrow();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    @Test
+    public void release_ofAConnectionLeftInATransaction_shouldRollBackAndRestoreAutoCommit() throws SQLException {
+        Connection connection = connectionPool.borrow();
+        Connection physical = physicalConnections.get(0);
+        when(physical.getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physical).rollback();
+        verify(physical).setAutoCommit(true);
+    }
+
+    @Test
+    public void maintain_shouldEvictIdleConnections_aboveTheMinimumSize() throws Exception {
+        connectionPool.close();
+        settings.setIdleTimeoutMillis(0);
+        settings.setEvictionIntervalMillis(20);
+        connectionPool = new ConnectionPool("test", this::createPhysicalConnection, settings);
+
+        connectionPool.borrow().close();
+        Thread.sleep(200);
+
+        assertEquals(0, connectionPool.getTotalCount());
+        verify(physicalConnections.get(0)).close();
+    }
+
+    @Test
+    public void prepareStatement_onABorrowedAgainConnection_shouldReuseTheCachedStatement() throws SQLException {
+        Connection first = connectionPool.borrow();
+        PreparedStatement ps = first.prepareStatement("select 1");
+        ps.setInt(1, 42);
+        ps.close();
+        first.close();
+        Connection second = connectionPool.borrow();
+        PreparedStatement again = second.prepareStatement("select 1");
+
+        // Une seule préparation, et la fermeture logique ne fait que vider les paramètres
+        verify(physicalConnections.get(0), times(1)).prepareStatement("select 1");
+        verify(physicalStatements.get(0)).setInt(1, 42);
+        verify(physicalStatements.get(0)).clearParameters();
+        verify(physicalStatements.get(0), never()).close();
+        assertTrue(ps.isClosed());
+        assertFalse(again.isClosed());
+        assertEquals(1, connectionPool.getStatementCacheHits());
+        assertEquals(1, connectionPool.getStatementCacheMisses());
+    }
+
+    @Test
+    public void prepareStatement_whileTheCachedOneIsOpen_shouldPrepareAnotherOne() throws SQLException {
+        Connection connection = connectionPool.borrow();
+        PreparedStatement first = connection.prepareStatement("select 1");
+        PreparedStatement second = connection.prepareStatement("select 1");
+        second.close();
+
+        assertFalse(first.isClosed());
+        verify(physicalConnections.get(0), times(2)).prepareStatement("select 1");
+        assertEquals(0, connectionPool.getStatementCacheHits());
+    }
+
+    @Test
+    public void prepareStatement_aboveTheCacheSize_shouldCloseTheLeastRecentlyUsedStatement() throws SQLException {
+        connectionPool.close();
+        settings.setStatementCacheSize(1);
+        connectionPool = new ConnectionPool("test", this::createPhysicalConnection, settings, sql -> !sql.contains("?"));
+        Connection connection = connectionPool.borrow();
+        PreparedStatement first = connection.prepareStatement("select 1");
+        first.close();
+        connection.prepareStatement("select 2").close();
+        connection.prepareStatement("select ?").close();
+        connection.prepareStatement("select ?").close();
+
+        // select 1 est évincé par select 2, et select ? n'est jamais mis en cache
+        verify(physicalStatements.get(0)).close();
+        verify(physicalConnections.get(0), times(2)).prepareStatement("select ?");
+        assertEquals(0, connectionPool.getStatementCacheHits());
+        assertEquals(2, connectionPool.getStatementCacheMisses());
+    }
+
+    @Test
+    public void statementLeftOpen_shouldBeTakenBackWithTheConnection() throws SQLException {
+        Connection first = connectionPool.borrow();
+        PreparedStatement leaked = first.prepareStatement("select 1");
+        first.close();
+        Connection second = connectionPool.borrow();
+        second.prepareStatement("select 1");
+
+        assertTrue(leaked.isClosed());
+        assertThrows(SQLException.class, () -> leaked.executeQuery());
+        assertEquals(1, connectionPool.getStatementCacheHits());
+    }
+
+    @Test
+    public void statementEvictedWhileOpen_shouldBeClosedWithTheConnection() throws SQLException {
+        connectionPool.close();
+        settings.setStatementCacheSize(1);
+        connectionPool = new ConnectionPool("test", this::createPhysicalConnection, settings);
+        Connection connection = connectionPool.borrow();
+        // select 1 est évincé par select 2 alors qu'il est encore ouvert
+        connection.prepareStatement("select 1");
+        connection.prepareStatement("select 2").close();
+        verify(physicalStatements.get(0), never()).close();
+
+        connection.close();
+
+        verify(physicalStatements.get(0)).close();
+        verify(physicalStatements.get(1), never()).close();
+    }
+
+    @Test
+    public void uncachedStatementLeftOpen_shouldBeClosedWithTheConnection() throws SQLException {
+        connectionPool.close();
+        connectionPool = new ConnectionPool("test", this::createPhysicalConnection, settings, sql -> !sql.contains("?"));
+        Connection connection = connectionPool.borrow();
+        connection.prepareStatement("select ?");
+        // le second select 1 ne peut pas reprendre celui du cache, encore ouvert
+        connection.prepareStatement("select 1");
+        connection.prepareStatement("select 1");
+
+        connection.close();
+
+        verify(physicalStatements.get(0)).close();
+        verify(physicalStatements.get(1), never()).close();
+        verify(physicalStatements.get(2)).close();
+    }
+}
@@ -0,0 +1,168 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.ConnectionPoolSettings;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DataBaseConfigTest {
+
+    private String primaryUrl;
+    private List<String> openedUrls;
+    private Set<String> downUrls;
+    private int maxPoolSize;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        // les pools sont partagés par URL dans toute la JVM, chaque test a donc ses propres URL
+        primaryUrl = "jdbc:test:" + UUID.randomUUID();
+        openedUrls = new ArrayList<>();
+        downUrls = new HashSet<>();
+        maxPoolSize = 10;
+    }
+
+    private DataBaseConfig dataBaseConfig(String... replicaUrls) {
+        return new DataBaseConfig() {
+            @Override
+            protected String getUrl() {
+                return primaryUrl;
+            }
+
+            @Override
+            protected List<String> getReplicaUrls() {
+                return Arrays.asList(replicaUrls);
+            }
+
+            @Override
+            protected ConnectionPool createConnectionPool() {
+                return connectionPool(primaryUrl);
+            }
+
+            @Override
+            protected ConnectionPool createReplicaConnectionPool(String url) {
+                return connectionPool(url);
+            }
+        };
+    }
+
+    private ConnectionPool connectionPool(String url) {
+        ConnectionPoolSettings settings = new ConnectionPoolSettings();
+        settings.setMinSize(0);
+        settings.setMaxSize(maxPoolSize);
+        settings.setBorrowTimeoutMillis(100);
+        return new ConnectionPool(url, () -> {
+            if (downUrls.contains(url)) {
+                throw new SQLException("Connection refused");
+            }
+            openedUrls.add(url);
+            Connection connection = mock(Connection.class);
+            lenient().when(connection.getAutoCommit()).thenReturn(true);
+            lenient().when(connection.isValid(anyInt())).thenReturn(true);
+            // la vérification des index au premier emprunt ne trouve aucun index
+            PreparedStatement statement = mock(PreparedStatement.class);
+            lenient().when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+            lenient().when(connection.prepareStatement(anyString())).thenReturn(statement);
+            return connection;
+        }, settings);
+    }
+
+    @Test
+    public void getReadConnection_withoutReplica_shouldUseThePrimary() throws Exception {
+        dataBaseConfig().getReadConnection().close();
+
+        assertEquals(Arrays.asList(primaryUrl), openedUrls);
+    }
+
+    @Test
+    public void getReadConnection_shouldSpreadTheReadsOverTheReplicas() throws Exception {
+        String replica1 = primaryUrl + "-replica1";
+        String replica2 = primaryUrl + "-replica2";
+        DataBaseConfig dataBaseConfig = dataBaseConfig(replica1, replica2);
+
+        Connection first = dataBaseConfig.getReadConnection();
+        Connection second = dataBaseConfig.getReadConnection();
+        dataBaseConfig.getConnection().close();
+
+        assertEquals(Arrays.asList(replica1, replica2, primaryUrl), openedUrls);
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void getReadConnection_shouldFallBackToThePrimary_whenTheReplicaIsDown() throws Exception {
+        String replica = primaryUrl + "-replica";
+        downUrls.add(replica);
+        DataBaseConfig dataBaseConfig = dataBaseConfig(replica);
+
+        dataBaseConfig.getReadConnection().close();
+        downUrls.clear();
+        dataBaseConfig.getReadConnection().close();
+
+        // la réplique en panne n'est pas réessayée tout de suite
+        assertEquals(Arrays.asList(primaryUrl), openedUrls);
+    }
+
+    @Test
+    public void getReadConnection_shouldKeepUsingAReplica_whoseConnectionsAreAllInUse() throws Exception {
+        String replica = primaryUrl + "-replica";
+        maxPoolSize = 1;
+        DataBaseConfig dataBaseConfig = dataBaseConfig(replica);
+
+        // la réplique est saturée : cette lecture passe par la base principale
+        Connection first = dataBaseConfig.getReadConnection();
+        dataBaseConfig.getReadConnection().close();
+        first.close();
+
+        // la réplique n'a pas été écartée : elle reprend la lecture suivante, la principale n'ouvre pas d'autre connexion
+        Connection third = dataBaseConfig.getReadConnection();
+        Connection fourth = dataBaseConfig.getReadConnection();
+        assertEquals(Arrays.asList(replica, primaryUrl), openedUrls);
+        third.close();
+        fourth.close();
+    }
+
+    private static ResultSet indexNames(String... names) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        int[] row = {0};
+        when(rs.next()).thenAnswer(invocation -> ++row[0] <= names.length);
+        when(rs.getString(1)).thenAnswer(invocation -> names[row[0] - 1]);
+        return rs;
+    }
+
+    @Test
+    public void checkExpectedIndexes_shouldReportTheMissingIndexes_queryingEachTableOnce() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.GET_INDEX_NAMES)).thenReturn(statement);
+        // les tables sont interrogées dans l'ordre où elles apparaissent dans la liste des index attendus
+        ResultSet ticketIndexes = indexNames("PRIMARY", "IDX_TICKET_VEHICLE_REG_NUMBER_ID");
+        ResultSet parkingIndexes = indexNames("PRIMARY", "IDX_PARKING_TYPE_AVAILABLE");
+        ResultSet archiveIndexes = indexNames("idx_ticket_archive_vehicle_reg_number_id");
+        when(statement.executeQuery()).thenReturn(ticketIndexes, parkingIndexes, archiveIndexes);
+
+        List<String> missingIndexes = new DataBaseConfig().checkExpectedIndexes(connection);
+
+        assertEquals(Arrays.asList("ticket.IDX_TICKET_OUT_TIME"), missingIndexes);
+        verify(statement, times(3)).executeQuery();
+        verify(statement).setString(1, "ticket");
+        verify(statement).setString(1, "parking");
+        verify(statement).setString(1, "ticket_archive");
+        verify(statement).close();
+    }
+}
@@ -296,4 +296,59 @@ public class FareCalculatorServiceTest {
         // Appel de la méthode - vérifier que calculateFare() lève une exception de type IllegalArgument
         assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFare(ticket));
     }
+
+    @Test
+    @DisplayName("Primitive fare engine, exact cents for 1 hour parking - Car and Bike")
+    public void calculateFareInCents_forOneHour_shouldReturnTheExactAmountInCents() {
+        long inTime = 1700000000000L;
+        long outTime = inTime + MILLIS_PER_HOUR;
+
+        assertEquals(75, fareCalculatorService.calculateFareInCents(inTime, outTime, ParkingType.CAR.ordinal(), false));
+        assertEquals(50, fareCalculatorService.calculateFareInCents(inTime, outTime, ParkingType.BIKE.ordinal(), false));
+    }
+
+    @Test
+    @DisplayName("Primitive fare engine, discounted fares are rounded half up to the cent")
+    public void calculateFareInCents_withDiscount_shouldRoundHalfUp() {
+        long inTime = 1700000000000L;
+        long outTime = inTime + MILLIS_PER_HOUR;
+
+        // 0.75 * 0.95 = 0.7125 -> 71 cents, 0.50 * 0.95 = 0.475 -> 48 cents
+        assertEquals(71, fareCalculatorService.calculateFareInCents(inTime, outTime, ParkingType.CAR.ordinal(), true));
+        assertEquals(48, fareCalculatorService.calculateFareInCents(inTime, outTime, ParkingType.BIKE.ordinal(), true));
+    }
+
+    @Test
+    @DisplayName("Primitive fare engine, 30 minutes or less are free")
+    public void calculateFareInCents_forThirtyMinutesOrLess_shouldReturn0() {
+        long inTime = 1700000000000L;
+
+        assertEquals(0, fareCalculatorService.calculateFareInCents(inTime, inTime + MILLIS_PER_HOUR / 2, ParkingType.CAR.ordinal(), false));
+        assertEquals(0, fareCalculatorService.calculateFareInCents(inTime, inTime, ParkingType.BIKE.ordinal(), true));
+    }
+
+    @Test
+    @DisplayName("Primitive fare engine, IllegalArgument Exception thrown when duration < 0")
+    public void calculateFareInCents_withANegativeDuration_shouldThrowAnIllegalArgumentException() {
+        long inTime = 1700000000000L;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFareInCents(inTime, inTime - 1, ParkingType.CAR.ordinal(), false));
+    }
+
+    @Test
+    @DisplayName("The ticket price is set from the exact amount in cents")
+    public void calculateFare_shouldSetTheTicketPriceFromTheAmountInCents() {
+        Date inTime = new Date(1700000000000L);
+        Date outTime = new Date(1700000000000L + 3 * MILLIS_PER_HOUR);
+        ticket.setInTime(inTime);
+        ticket.setOutTime(outTime);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+
+        fareCalculatorService.calculateFare(ticket, true);
+
+        // 2.5 heures payantes * 1.5 * 0.95 = 3.5625 -> 3.56
+        assertEquals(356, ticket.getPriceInCents());
+        assertEquals(3.56, ticket.getPrice());
+    }
 }
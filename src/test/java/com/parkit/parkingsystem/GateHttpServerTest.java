@@ -0,0 +1,153 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.web.GateHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GateHttpServerTest {
+
+    @Mock
+    private ParkingService parkingService;
+    @Mock
+    private ParkingSpotDAO parkingSpotDAO;
+
+    private GateHttpServer server;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        server = new GateHttpServer(parkingService, parkingSpotDAO, new InetSocketAddress("localhost", 0));
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        server.stop(0);
+    }
+
+    private HttpURLConnection request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private String readBody(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void postEntry_shouldEnterTheVehicle_andReturnItsSpot() throws IOException {
+        Ticket ticket = new Ticket();
+        ticket.setId(42);
+        ticket.setVehicleRegNumber("AB-123-CD");
+        ticket.setParkingSpot(new ParkingSpot(3, ParkingType.CAR, false));
+        ticket.setInTime(new Date(1700000000000L));
+        when(parkingService.enterVehicle(eq("AB-123-CD"), eq(ParkingType.CAR), eq(new Date(1700000000000L))))
+                .thenReturn(GateResult.entered(ticket, false));
+
+        HttpURLConnection connection = request("POST", "/gates/entry",
+                "{\"vehicleRegNumber\":\"AB-123-CD\",\"parkingType\":\"car\",\"time\":1700000000000}");
+
+        assertEquals(201, connection.getResponseCode());
+        String body = readBody(connection);
+        assertTrue(body.contains("\"status\":\"ENTERED\""));
+        assertTrue(body.contains("\"ticketId\":42"));
+        assertTrue(body.contains("\"parkingNumber\":3"));
+    }
+
+    @Test
+    public void postExit_withoutAnOpenTicket_shouldReturnNotFound() throws IOException {
+        when(parkingService.exitVehicle(eq("AB-123-CD"), any(Date.class)))
+                .thenReturn(GateResult.of(GateResult.Status.TICKET_NOT_CLOSED));
+
+        HttpURLConnection connection = request("POST", "/gates/exit", "{\"vehicleRegNumber\":\"AB-123-CD\"}");
+
+        assertEquals(404, connection.getResponseCode());
+        assertTrue(readBody(connection).contains("TICKET_NOT_CLOSED"));
+    }
+
+    @Test
+    public void postEntry_withAnInvalidBody_shouldReturnBadRequest() throws IOException {
+        HttpURLConnection connection = request("POST", "/gates/entry", "{\"vehicleRegNumber\":\"AB-123-CD\"}");
+
+        // Le type de véhicule est obligatoire : le service ne doit pas être appelé
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(readBody(connection).contains("Missing parkingType"));
+        verifyNoInteractions(parkingService);
+    }
+
+    @Test
+    public void postEntry_withABlankOrOverlongPlate_shouldReturnBadRequest() throws IOException {
+        HttpURLConnection blank = request("POST", "/gates/entry", "{\"vehicleRegNumber\":\"  \",\"parkingType\":\"CAR\"}");
+        HttpURLConnection overlong = request("POST", "/gates/entry",
+                "{\"vehicleRegNumber\":\"AB-123-CD-456\",\"parkingType\":\"CAR\"}");
+
+        // La plaque ne tiendrait pas dans la colonne VEHICLE_REG_NUMBER : le service ne doit pas être appelé
+        assertEquals(400, blank.getResponseCode());
+        assertTrue(readBody(blank).contains("Missing vehicleRegNumber"));
+        assertEquals(400, overlong.getResponseCode());
+        assertTrue(readBody(overlong).contains("longer than 10 characters"));
+        verifyNoInteractions(parkingService);
+    }
+
+    @Test
+    public void postEntry_shouldTrimThePlate() throws IOException {
+        when(parkingService.enterVehicle(eq("AB-123-CD"), eq(ParkingType.CAR), any(Date.class)))
+                .thenReturn(GateResult.of(GateResult.Status.PARKING_FULL));
+
+        HttpURLConnection connection = request("POST", "/gates/entry",
+                "{\"vehicleRegNumber\":\" AB-123-CD \",\"parkingType\":\"CAR\"}");
+
+        assertEquals(409, connection.getResponseCode());
+    }
+
+    @Test
+    public void getAvailability_shouldReturnTheFreeSpotCountPerType() throws IOException {
+        when(parkingSpotDAO.getAvailableSpotCount(ParkingType.CAR)).thenReturn(2);
+        when(parkingSpotDAO.getAvailableSpotCount(ParkingType.BIKE)).thenReturn(1);
+
+        HttpURLConnection connection = request("GET", "/availability", null);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"CAR\":2,\"BIKE\":1}", readBody(connection));
+    }
+}
@@ -0,0 +1,95 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingStorage;
+import com.parkit.parkingsystem.model.GateResult;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedStorageTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    @TempDir
+    Path directory;
+
+    private ParkingService parkingService(ParkingStorage storage) {
+        return new ParkingService(storage.getParkingSpotRepository(), storage.getTicketRepository());
+    }
+
+    @Test
+    public void enterAndExit_shouldWorkWithoutADatabase() throws Exception {
+        ParkingStorage storage = ParkingStorage.openMappedFiles(directory, false);
+        ParkingService parkingService = parkingService(storage);
+        Date inTime = new Date(System.currentTimeMillis() - ONE_HOUR);
+
+        GateResult entry = parkingService.enterVehicle("ABCDEF", ParkingType.CAR, inTime);
+        GateResult exit = parkingService.exitVehicle("ABCDEF", new Date(inTime.getTime() + ONE_HOUR));
+
+        assertEquals(GateResult.Status.ENTERED, entry.getStatus());
+        assertEquals(1, entry.getParkingSpot().getId());
+        assertEquals(GateResult.Status.EXITED, exit.getStatus());
+        // 1h de voiture dont 30 min gratuites
+        assertEquals(0.75, exit.getFare());
+        assertEquals(3, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.CAR));
+        storage.close();
+    }
+
+    @Test
+    public void reopen_shouldKeepTicketsAndOccupiedSpots() throws Exception {
+        ParkingStorage storage = ParkingStorage.openMappedFiles(directory, false);
+        ParkingService parkingService = parkingService(storage);
+        Date inTime = new Date(System.currentTimeMillis() - ONE_HOUR);
+        parkingService.enterVehicle("ABCDEF", ParkingType.CAR, inTime);
+        parkingService.exitVehicle("ABCDEF", new Date(inTime.getTime() + ONE_HOUR));
+        parkingService.enterVehicle("ABCDEF", ParkingType.CAR, new Date());
+        parkingService.enterVehicle("GHIJKL", ParkingType.BIKE, new Date());
+        storage.close();
+
+        // Après réouverture : les places occupées le restent et l'utilisateur est reconnu comme récurrent
+        storage = ParkingStorage.openMappedFiles(directory, false);
+        assertEquals(2, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.CAR));
+        assertEquals(1, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.BIKE));
+        assertEquals(2, storage.getTicketRepository().getNbTicket("ABCDEF"));
+        Ticket ticket = storage.getTicketRepository().getTicket("ABCDEF");
+        assertNull(ticket.getOutTime());
+        assertEquals(2, ticket.getId());
+
+        GateResult exit = parkingService(storage).exitVehicle("ABCDEF", new Date());
+        assertTrue(exit.isRecurringUser());
+        storage.close();
+    }
+
+    @Test
+    public void reopen_shouldFreeASpotReservedWithoutTicket() throws Exception {
+        // Une place réservée puis un arrêt avant la création du ticket : elle doit être libérée au redémarrage
+        ParkingStorage storage = ParkingStorage.openMappedFiles(directory, false);
+        assertNotNull(storage.getParkingSpotRepository().reserveNextAvailable(ParkingType.CAR));
+        assertEquals(2, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.CAR));
+        storage.close();
+
+        storage = ParkingStorage.openMappedFiles(directory, false);
+        assertEquals(3, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.CAR));
+        storage.close();
+    }
+
+    @Test
+    public void saveTicket_shouldRejectAPlateLongerThanARecordAllows() throws Exception {
+        ParkingStorage storage = ParkingStorage.openMappedFiles(directory, false);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(storage.getParkingSpotRepository().reserveNextAvailable(ParkingType.CAR));
+        ticket.setVehicleRegNumber("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        ticket.setInTime(new Date());
+
+        assertFalse(storage.getTicketRepository().saveTicket(ticket));
+        assertNull(storage.getTicketRepository().getTicket("ABCDEFGHIJKLMNOPQRSTUVWXYZ"));
+        storage.close();
+    }
+}
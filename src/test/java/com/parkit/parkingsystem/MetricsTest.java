@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.Metrics;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.metrics.OperationSnapshot;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class MetricsTest {
+
+    @Test
+    public void percentiles_shouldBeWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 à 1000 microsecondes
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500_000, snapshot.getValueAtPercentile(50), 500_000 * 0.0625);
+        assertEquals(990_000, snapshot.getValueAtPercentile(99), 990_000 * 0.0625);
+        assertEquals(1_000_000, snapshot.getMax(), 1_000_000 * 0.0625);
+        assertTrue(snapshot.getValueAtPercentile(50) >= 500_000);
+    }
+
+    @Test
+    public void smallAndHugeValues_shouldBeRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.getValueAtPercentile(1));
+        assertEquals(3, snapshot.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+    }
+
+    @Test
+    public void snapshotMinusPrevious_shouldOnlyCountTheInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        LatencyHistogram.Snapshot previous = histogram.snapshot();
+        histogram.record(200_000);
+        histogram.record(200_000);
+
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(previous);
+
+        assertEquals(2, interval.getCount());
+        assertTrue(interval.getValueAtPercentile(50) >= 200_000);
+    }
+
+    @Test
+    public void start_shouldPublishTheOperationsOverJmx() throws Exception {
+        OperationMetrics operation = Metrics.operation("MetricsTest.operation");
+        operation.record(System.nanoTime());
+        operation.recordFailure();
+        Metrics.start();
+
+        CompositeData[] operations = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("com.parkit.parkingsystem:type=Metrics"), "Operations");
+
+        boolean found = false;
+        for (CompositeData data : operations) {
+            if ("MetricsTest.operation".equals(data.get("name"))) {
+                found = true;
+                assertEquals(1L, data.get("count"));
+                assertEquals(1L, data.get("failures"));
+            }
+        }
+        assertTrue(found);
+        assertTrue(new OperationSnapshot("MetricsTest.operation", operation.getLatency().snapshot(), 1).toString()
+                .startsWith("MetricsTest.operation: 1 calls, 1 failures"));
+    }
+
+    @Test
+    public void processIncomingVehicle_shouldRecordTheConsoleEntry() throws Exception {
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+        ParkingSpotDAO parkingSpotDAO = mock(ParkingSpotDAO.class);
+        TicketDAO ticketDAO = mock(TicketDAO.class);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true, false);
+        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        OperationMetrics entries = Metrics.operation("ParkingService.enterVehicle");
+        long count = entries.getLatency().snapshot().getCount();
+        long failures = entries.getFailures();
+
+        // la seconde entrée échoue : son ticket n'est pas enregistré
+        parkingService.processIncomingVehicle();
+        parkingService.processIncomingVehicle();
+
+        assertEquals(count + 2, entries.getLatency().snapshot().getCount());
+        assertEquals(failures + 1, entries.getFailures());
+    }
+}
@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketCache;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenTicketCacheTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private OpenTicketCache openTicketCache;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        openTicketCache = new OpenTicketCache();
+    }
+
+    private static Ticket ticket(int id, String vehicleRegNumber, Date inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(inTime);
+        return ticket;
+    }
+
+    @Test
+    public void putAndGet_shouldNeverShareTheCachedTicket() {
+        Ticket ticket = ticket(1, "ABCDEF", new Date(ONE_HOUR));
+        openTicketCache.put(ticket);
+
+        // modifier le ticket mis en cache ou celui rendu par get() ne change pas l'entrée du cache
+        ticket.setPrice(10);
+        ticket.getParkingSpot().setAvailable(true);
+        Ticket cached = openTicketCache.get("ABCDEF");
+        cached.setOutTime(new Date(2 * ONE_HOUR));
+        cached.getParkingSpot().setAvailable(true);
+
+        Ticket again = openTicketCache.get("ABCDEF");
+        assertNotSame(cached, again);
+        assertEquals(1, again.getId());
+        assertEquals(0, again.getPrice());
+        assertNull(again.getOutTime());
+        assertFalse(again.getParkingSpot().isAvailable());
+        assertNull(openTicketCache.get("GHIJKL"));
+    }
+
+    @Test
+    public void evict_shouldRemoveTheTicketOfThePlate() {
+        openTicketCache.load(Arrays.asList(ticket(1, "ABCDEF", new Date(ONE_HOUR)),
+                ticket(2, "GHIJKL", new Date(ONE_HOUR))));
+
+        openTicketCache.evict("ABCDEF");
+
+        assertTrue(openTicketCache.isLoaded());
+        assertNull(openTicketCache.get("ABCDEF"));
+        assertEquals(2, openTicketCache.get("GHIJKL").getId());
+        assertEquals(1, openTicketCache.size());
+    }
+
+    @Test
+    public void assignId_shouldGiveTheIdToTheJournaledTicket() {
+        Date inTime = new Date(ONE_HOUR);
+        openTicketCache.put(ticket(0, "ABCDEF", inTime));
+
+        openTicketCache.assignId(ticket(42, "ABCDEF", inTime));
+        openTicketCache.assignId(ticket(43, "GHIJKL", inTime));
+
+        assertEquals(42, openTicketCache.get("ABCDEF").getId());
+        assertNull(openTicketCache.get("GHIJKL"));
+    }
+
+    @Test
+    public void assignId_shouldKeepTheNewerTicketOfThePlate() {
+        // le véhicule est ressorti puis rentré avant l'insertion de son premier ticket par le journal
+        openTicketCache.put(ticket(0, "ABCDEF", new Date(3 * ONE_HOUR)));
+        openTicketCache.assignId(ticket(42, "ABCDEF", new Date(ONE_HOUR)));
+
+        assertEquals(0, openTicketCache.get("ABCDEF").getId());
+        assertEquals(new Date(3 * ONE_HOUR), openTicketCache.get("ABCDEF").getInTime());
+
+        // un ticket qui a déjà son id n'est pas remplacé
+        openTicketCache.put(ticket(50, "GHIJKL", new Date(ONE_HOUR)));
+        openTicketCache.assignId(ticket(42, "GHIJKL", new Date(ONE_HOUR)));
+
+        assertEquals(50, openTicketCache.get("GHIJKL").getId());
+    }
+
+    @Test
+    public void evictUnsaved_shouldOnlyDropTheTicketNotInsertedYet() {
+        Date inTime = new Date(ONE_HOUR);
+        openTicketCache.put(ticket(0, "ABCDEF", inTime));
+        openTicketCache.put(ticket(7, "GHIJKL", inTime));
+
+        openTicketCache.evictUnsaved(ticket(0, "ABCDEF", inTime));
+        openTicketCache.evictUnsaved(ticket(0, "GHIJKL", inTime));
+
+        assertNull(openTicketCache.get("ABCDEF"));
+        assertEquals(7, openTicketCache.get("GHIJKL").getId());
+    }
+}
@@ -3,6 +3,7 @@ package com.parkit.parkingsystem;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.GateResult;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
@@ -18,6 +19,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -60,17 +63,16 @@ public class ParkingServiceTest {
             e.printStackTrace();
         }
 
-        // on spécifie le spot attribué
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        // on spécifie le spot réservé
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
         // on appelle la fonction
         parkingService.processIncomingVehicle();
 
-        // on vérifie que getNextAvailableSlot() a été appelée pour une voiture
-        verify(parkingSpotDAO).getNextAvailableSlot(ParkingType.CAR);
-
-        // on vérifie que updateParking() a bien été appelé et a updaté la disponibilité de la place
-        verify(parkingSpotDAO).updateParking(any(ParkingSpot.class));
+        // on vérifie que la place a été réservée pour une voiture en une seule étape, sans updateParking() séparé
+        verify(parkingSpotDAO).reserveNextAvailable(ParkingType.CAR);
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
 
         // on vérifie que le ticket a bien été enregistré dans la DB
         verify(ticketDAO).saveTicket(any(Ticket.class));
@@ -86,12 +88,12 @@ public class ParkingServiceTest {
             e.printStackTrace();
         }
 
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(1);
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.BIKE)).thenReturn(new ParkingSpot(4, ParkingType.BIKE, false));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
         parkingService.processIncomingVehicle();
 
-        verify(parkingSpotDAO).getNextAvailableSlot(ParkingType.BIKE);
-        verify(parkingSpotDAO).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO).reserveNextAvailable(ParkingType.BIKE);
         verify(ticketDAO).saveTicket(any(Ticket.class));
     }
 
@@ -115,18 +117,23 @@ public class ParkingServiceTest {
             e.printStackTrace();
         }
 
-        // Paramétrer les mocks
+        // Paramétrer les mocks : closeTicket() applique le calcul du prix reçu en paramètre avec 1 ticket pour la plaque
 
-        when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
-        when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
-        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(1);
+        when(ticketDAO.closeTicket(eq("ABCDEF"), any(Date.class), any())).thenAnswer(invocation -> {
+            ticket.setOutTime(invocation.getArgument(1));
+            BiConsumer<Ticket, Integer> fareCalculation = invocation.getArgument(2);
+            fareCalculation.accept(ticket, 1);
+            return ticket;
+        });
 
-        // Appel de la méthode et on vérifie que la place de parking a bien été mise à jour et que le ticket est bien resté en DB
+        // Appel de la méthode et on vérifie que la place de parking a bien été libérée et que le prix a été calculé
         parkingService.processExitingVehicle();
 
-        verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
-        assertEquals(1, ticketDAO.getNbTicket("ABCDEF"));
+        verify(ticketDAO, Mockito.times(1)).closeTicket(eq("ABCDEF"), any(Date.class), any());
+        verify(parkingSpotDAO, Mockito.times(1)).spotReleased(parkingSpot);
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        assertNotNull(ticket.getOutTime());
+        assertEquals(0.75, ticket.getPrice());
 
     }
 
@@ -141,10 +148,11 @@ public class ParkingServiceTest {
             e.printStackTrace();
         }
 
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
 
         // Cette fois on spécifie que 2 tickets sont dans la DB pour cette plaque
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(2);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         System.setOut(new PrintStream(outputStream));
@@ -160,6 +168,30 @@ public class ParkingServiceTest {
         assertTrue(printedOutput.contains("Happy to see you again! As a recurring user of our parking, you will get a 5% rebate."));
     }
 
+    @Test
+    public void processIncomingVehicle_shouldReleaseTheReservedSpot_whenThePlateCannotBeRead() throws Exception {
+
+        // La place est réservée mais la lecture de la plaque échoue : la place doit être rendue
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenThrow(new IllegalArgumentException("Invalid input provided"));
+
+        parkingService.processIncomingVehicle();
+
+        verify(parkingSpotDAO).updateParking(argThat(ParkingSpot::isAvailable));
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void processIncomingVehicle_shouldNotSaveATicket_whenTheParkingIsFull() {
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(null);
+
+        parkingService.processIncomingVehicle();
+
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
     @Test
     public void processExitingVehicleTestUnableUpdate() {
 
@@ -179,15 +211,118 @@ public class ParkingServiceTest {
             e.printStackTrace();
         }
 
-        // On spécifie que updateTicket() renvoit false pour simuler qu'il n' pas réussi à update le ticket
+        // On spécifie que closeTicket() renvoit null pour simuler qu'il n'a pas réussi à clôturer le ticket
 
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
-        when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
+        when(ticketDAO.closeTicket(eq("ABCDEF"), any(Date.class), any())).thenReturn(null);
 
         // On appelle la fonction de sortie et vérifie que la disponibilité de la place n'a pas été mise à jour
         parkingService.processExitingVehicle();
         verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, never()).spotReleased(any(ParkingSpot.class));
+
+    }
+
+    @Test
+    public void enterVehicle_shouldReturnTheTicketAndSpot_withoutReadingTheConsole() {
+
+        // Entrée automatique : ni le type ni la plaque ne sont lus via inputReaderUtil
+        ParkingService gateService = new ParkingService(parkingSpotDAO, ticketDAO);
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
+        when(ticketDAO.getNbTicketAsync("ABCDEF")).thenReturn(CompletableFuture.completedFuture(1));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+        Date inTime = new Date();
+
+        GateResult result = gateService.enterVehicle("ABCDEF", ParkingType.CAR, inTime);
+
+        assertEquals(GateResult.Status.ENTERED, result.getStatus());
+        assertEquals(1, result.getParkingSpot().getId());
+        assertEquals(inTime, result.getTicket().getInTime());
+        assertTrue(result.isRecurringUser());
+        verify(ticketDAO).saveTicket(result.getTicket());
+        verifyNoInteractions(inputReaderUtil);
+    }
+
+    @Test
+    public void enterVehicle_shouldReportAFullParking() {
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.BIKE)).thenReturn(null);
+
+        GateResult result = parkingService.enterVehicle("ABCDEF", ParkingType.BIKE, new Date());
+
+        assertEquals(GateResult.Status.PARKING_FULL, result.getStatus());
+        assertNull(result.getTicket());
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
+    @Test
+    public void enterVehicle_shouldOpenTheTicketInTheFacilityOfTheRepositories() {
+        // les deux DAO sont ceux du parking 7
+        when(parkingSpotDAO.getFacilityId()).thenReturn(7);
+        when(ticketDAO.getFacilityId()).thenReturn(7);
+        ParkingService gateService = new ParkingService(parkingSpotDAO, ticketDAO);
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(7, 1, ParkingType.CAR, false));
+        when(ticketDAO.getNbTicketAsync("ABCDEF")).thenReturn(CompletableFuture.completedFuture(0));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        GateResult result = gateService.enterVehicle("ABCDEF", ParkingType.CAR, new Date());
+
+        assertEquals(7, gateService.getFacilityId());
+        assertEquals(7, result.getTicket().getFacilityId());
+        assertEquals(7, result.getParkingSpot().getFacilityId());
+    }
+
+    @Test
+    public void enterVehicle_shouldReleaseTheSpot_whenTheTicketIsNotSaved() {
+        when(parkingSpotDAO.reserveNextAvailable(ParkingType.CAR)).thenReturn(new ParkingSpot(1, ParkingType.CAR, false));
+        when(ticketDAO.getNbTicketAsync("ABCDEF")).thenReturn(CompletableFuture.completedFuture(0));
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        GateResult result = parkingService.enterVehicle("ABCDEF", ParkingType.CAR, new Date());
+
+        // pas de ticket enregistré : la barrière reste fermée et la place réservée est rendue
+        assertEquals(GateResult.Status.ERROR, result.getStatus());
+        verify(parkingSpotDAO).updateParking(argThat(ParkingSpot::isAvailable));
+    }
+
+    @Test
+    public void parkingService_shouldRefuseRepositoriesOfDifferentFacilities() {
+        when(parkingSpotDAO.getFacilityId()).thenReturn(7);
+        when(ticketDAO.getFacilityId()).thenReturn(8);
+
+        assertThrows(IllegalArgumentException.class, () -> new ParkingService(parkingSpotDAO, ticketDAO));
+    }
+
+    @Test
+    public void exitVehicle_shouldReturnTheFare_andReleaseTheSpot() {
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
+        Ticket ticket = new Ticket();
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber("ABCDEF");
+        when(ticketDAO.closeTicket(eq("ABCDEF"), any(Date.class), any())).thenAnswer(invocation -> {
+            ticket.setOutTime(invocation.getArgument(1));
+            BiConsumer<Ticket, Integer> fareCalculation = invocation.getArgument(2);
+            fareCalculation.accept(ticket, 2);
+            return ticket;
+        });
+
+        GateResult result = parkingService.exitVehicle("ABCDEF", new Date());
+
+        // 2 tickets pour la plaque : utilisateur récurrent, 5% de remise sur 1h de voiture (30 min gratuites)
+        assertEquals(GateResult.Status.EXITED, result.getStatus());
+        assertTrue(result.isRecurringUser());
+        assertEquals(0.71, result.getFare());
+        verify(parkingSpotDAO).spotReleased(parkingSpot);
+        verifyNoInteractions(inputReaderUtil);
+    }
+
+    @Test
+    public void exitVehicle_shouldReportATicketThatCouldNotBeClosed() {
+        when(ticketDAO.closeTicket(eq("ABCDEF"), any(Date.class), any())).thenReturn(null);
+
+        GateResult result = parkingService.exitVehicle("ABCDEF", new Date());
 
+        assertEquals(GateResult.Status.TICKET_NOT_CLOSED, result.getStatus());
+        verify(parkingSpotDAO, never()).spotReleased(any(ParkingSpot.class));
     }
 
     @Test
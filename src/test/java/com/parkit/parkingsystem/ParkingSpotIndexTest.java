@@ -0,0 +1,144 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotIndexTest {
+
+    private ParkingSpotIndex parkingSpotIndex;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        // Même configuration que Data.sql : 3 places voiture et 2 places moto
+        parkingSpotIndex = new ParkingSpotIndex();
+        parkingSpotIndex.load(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, true),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true),
+                new ParkingSpot(5, ParkingType.BIKE, true)));
+    }
+
+    @Test
+    public void getLowestAvailable_shouldReturnTheLowestFreeSpot_ofTheRequestedType() {
+        assertEquals(1, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(4, parkingSpotIndex.getLowestAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void setAvailable_shouldKeepTheIndexInSync() {
+        parkingSpotIndex.setAvailable(1, false);
+        assertEquals(2, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+
+        parkingSpotIndex.setAvailable(1, true);
+        assertEquals(1, parkingSpotIndex.getLowestAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void getLowestAvailable_shouldReturn0_whenTheParkingIsFull() {
+        parkingSpotIndex.setAvailable(4, false);
+        parkingSpotIndex.setAvailable(5, false);
+        assertEquals(0, parkingSpotIndex.getLowestAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void setAvailable_forAnUnknownSpot_shouldBeIgnored() {
+        parkingSpotIndex.setAvailable(42, true);
+        assertEquals(3, parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.getAvailableCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void claimLowestAvailable_shouldTakeTheSpotOutOfTheIndex() {
+        assertEquals(1, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(3, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        assertEquals(0, parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void claimLowestAvailable_fromConcurrentLanes_shouldNeverHandOutTheSameSpotTwice() throws Exception {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            parkingSpots.add(new ParkingSpot(i, ParkingType.CAR, true));
+        }
+        parkingSpotIndex.load(parkingSpots);
+
+        // 8 voies d'entrée réservent 1200 places en parallèle alors que seules 1000 existent
+        ExecutorService lanes = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> entries = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            entries.add(() -> parkingSpotIndex.claimLowestAvailable(ParkingType.CAR));
+        }
+        Set<Integer> allocated = new HashSet<>();
+        int full = 0;
+        for (Future<Integer> entry : lanes.invokeAll(entries)) {
+            int parkingNumber = entry.get();
+            if (parkingNumber == 0) {
+                full++;
+            } else {
+                assertTrue(allocated.add(parkingNumber), "Spot " + parkingNumber + " allocated twice");
+            }
+        }
+        lanes.shutdown();
+
+        assertEquals(1000, allocated.size());
+        assertEquals(200, full);
+    }
+
+    @Test
+    public void occupancyCounts_shouldOnlyMoveWhenASpotChangesState() {
+        parkingSpotIndex.claimLowestAvailable(ParkingType.CAR);
+        // la sortie puis une mise à jour répétée de la même place ne doivent compter qu'une fois
+        parkingSpotIndex.setAvailable(4, false);
+        parkingSpotIndex.setAvailable(4, false);
+        parkingSpotIndex.setAvailable(2, true);
+
+        assertEquals(3, parkingSpotIndex.getSpotCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.getOccupiedCount(ParkingType.CAR));
+        assertEquals(2, parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.getOccupiedCount(ParkingType.BIKE));
+
+        parkingSpotIndex.load(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, false)));
+        assertEquals(1, parkingSpotIndex.getOccupiedCount(ParkingType.CAR));
+        assertEquals(0, parkingSpotIndex.getSpotCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void load_shouldNeverShowAPartialCountToTheDisplays() throws Exception {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            parkingSpots.add(new ParkingSpot(i, ParkingType.CAR, i % 2 == 0));
+        }
+        parkingSpotIndex.load(parkingSpots);
+
+        // un afficheur lit le nombre de places occupées pendant que la réconciliation recharge l'index
+        ExecutorService reconciler = Executors.newSingleThreadExecutor();
+        Future<?> reloads = reconciler.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                parkingSpotIndex.load(parkingSpots);
+            }
+        });
+        while (!reloads.isDone()) {
+            assertEquals(500, parkingSpotIndex.getOccupiedCount(ParkingType.CAR));
+        }
+        reloads.get();
+        reconciler.shutdown();
+    }
+}
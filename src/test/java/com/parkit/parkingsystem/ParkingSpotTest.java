@@ -46,4 +46,11 @@ public class ParkingSpotTest {
         ParkingSpot parkingSpot2 = new ParkingSpot(1, ParkingType.BIKE, false); // Same 'number'
         assertEquals(parkingSpot1, parkingSpot2);
     }
+
+    @Test
+    public void testEquals_SameNumber_DifferentFacility() {
+        ParkingSpot parkingSpot1 = new ParkingSpot(1, 1, ParkingType.CAR, true);
+        ParkingSpot parkingSpot2 = new ParkingSpot(2, 1, ParkingType.CAR, true); // Same 'number' in another car park
+        assertNotEquals(parkingSpot1, parkingSpot2);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.ShardRouter;
+import com.parkit.parkingsystem.constants.Facility;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    private static Properties shards(String... entries) {
+        Properties properties = new Properties();
+        for (int i = 0; i < entries.length; i += 2) {
+            properties.setProperty(entries[i], entries[i + 1]);
+        }
+        return properties;
+    }
+
+    private static String defaultUrl() {
+        return new DataBaseConfig() {
+            String url() {
+                return getUrl();
+            }
+        }.url();
+    }
+
+    @Test
+    public void getDataBaseConfig_shouldGiveEachFacilityItsOwnPool() {
+        ShardRouter router = new ShardRouter(shards(
+                "facility.2.url", "jdbc:h2:mem:facility2",
+                "facility.3.url", "jdbc:h2:mem:facility3",
+                "facility.3.user", "sa"));
+
+        DataBaseConfig facility2 = router.getDataBaseConfig(2);
+        DataBaseConfig facility3 = router.getDataBaseConfig(3);
+
+        assertEquals(Arrays.asList(2, 3), Arrays.asList(router.getFacilityIds().toArray()));
+        // la même configuration est rendue à chaque appel, les DAO d'un parking partagent donc son pool
+        assertSame(facility2, router.getDataBaseConfig(2));
+        assertNotSame(facility2.getConnectionPool(), facility3.getConnectionPool());
+    }
+
+    @Test
+    public void getDataBaseConfig_shouldUseTheDefaultDatabaseForTheDefaultFacility() {
+        ShardRouter router = new ShardRouter(shards());
+
+        assertEquals(DataBaseConfig.class, router.getDataBaseConfig(Facility.DEFAULT_ID).getClass());
+        assertThrows(IllegalArgumentException.class, () -> router.getDataBaseConfig(2));
+    }
+
+    @Test
+    public void shardRouter_shouldRefuseTwoFacilitiesInTheSameDatabase() {
+        // deux parkings dans les mêmes tables se donneraient leurs places
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(shards(
+                "facility.2.url", "jdbc:h2:mem:shared",
+                "facility.3.url", "jdbc:h2:mem:shared")));
+    }
+
+    @Test
+    public void shardRouter_shouldRefuseAFacilityInTheDatabaseOfTheDefaultOne() {
+        // sans entrée, le parking 1 utilise la base de DataBaseConfig
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(shards(
+                "facility.7.url", defaultUrl())));
+        // la même base écrite autrement : sans paramètres, ou par son adresse IP
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(shards(
+                "facility.7.url", "jdbc:mysql://localhost:3306/prod")));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(shards(
+                "facility.7.url", "jdbc:mysql://127.0.0.1/prod?useSSL=false")));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(shards(
+                "facility.2.url", "jdbc:mysql://DB2:3306/airport",
+                "facility.7.url", "jdbc:mysql://db2/airport?useCursorFetch=true")));
+        new ShardRouter(shards(
+                "facility.1.url", "jdbc:h2:mem:facility1",
+                "facility.7.url", defaultUrl()));
+        new ShardRouter(shards(
+                "facility.7.url", "jdbc:mysql://localhost:3306/airport"));
+    }
+}
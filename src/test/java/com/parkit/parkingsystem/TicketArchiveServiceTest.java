@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.TicketArchiveService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketArchiveServiceTest {
+
+    private static final Date CLOSED_BEFORE = new Date(0);
+
+    @Mock
+    private TicketDAO ticketDAO;
+
+    @Test
+    public void archiveTicketsClosedBefore_shouldMoveTheTicketsChunkByChunk() throws Exception {
+        when(ticketDAO.addArchivePartitions(CLOSED_BEFORE)).thenReturn(true);
+        // 5 tickets à archiver, avec des trous dans les ids laissés par les tickets encore ouverts
+        when(ticketDAO.getTicketIdsToArchive(CLOSED_BEFORE, 0, 2)).thenReturn(new int[]{1, 2});
+        when(ticketDAO.getTicketIdsToArchive(CLOSED_BEFORE, 2, 2)).thenReturn(new int[]{4, 7});
+        when(ticketDAO.getTicketIdsToArchive(CLOSED_BEFORE, 7, 2)).thenReturn(new int[]{8});
+        when(ticketDAO.archiveTickets(anyInt(), anyInt(), eq(CLOSED_BEFORE))).thenAnswer(invocation ->
+                invocation.getArgument(0).equals(8) ? 1 : 2);
+
+        long archived = new TicketArchiveService(ticketDAO, 2, 0).archiveTicketsClosedBefore(CLOSED_BEFORE);
+
+        assertEquals(5, archived);
+        verify(ticketDAO).archiveTickets(1, 2, CLOSED_BEFORE);
+        verify(ticketDAO).archiveTickets(4, 7, CLOSED_BEFORE);
+        verify(ticketDAO).archiveTickets(8, 8, CLOSED_BEFORE);
+        // le dernier lot est incomplet : il n'y a plus rien à archiver
+        verify(ticketDAO, times(3)).getTicketIdsToArchive(any(Date.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void archiveTicketsClosedBefore_shouldStop_whenAChunkFails() throws Exception {
+        when(ticketDAO.addArchivePartitions(CLOSED_BEFORE)).thenReturn(true);
+        when(ticketDAO.getTicketIdsToArchive(CLOSED_BEFORE, 0, 2)).thenReturn(new int[]{1, 2});
+        when(ticketDAO.archiveTickets(1, 2, CLOSED_BEFORE)).thenReturn(-1);
+
+        long archived = new TicketArchiveService(ticketDAO, 2, 0).archiveTicketsClosedBefore(CLOSED_BEFORE);
+
+        assertEquals(0, archived);
+        verify(ticketDAO, times(1)).getTicketIdsToArchive(any(Date.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void archiveTicketsClosedBefore_shouldNotMoveTickets_withoutTheirPartitions() throws Exception {
+        when(ticketDAO.addArchivePartitions(CLOSED_BEFORE)).thenReturn(false);
+
+        assertEquals(0, new TicketArchiveService(ticketDAO, 2, 0).archiveTicketsClosedBefore(CLOSED_BEFORE));
+        verify(ticketDAO, never()).archiveTickets(anyInt(), anyInt(), any(Date.class));
+    }
+}
@@ -0,0 +1,57 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.model.TicketBatch;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketBatchTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void add_shouldGrowAndEncodeEachPlateOnce() {
+        TicketBatch batch = new TicketBatch(1);
+        for (int id = 1; id <= 100; id++) {
+            batch.add(id, id % 5 + 1, ParkingType.CAR, id % 2 == 0 ? "ABCDEF" : "GHIJKL", 0, ONE_HOUR, 75, false);
+        }
+
+        // 100 lignes mais seulement 2 plaques dans le dictionnaire
+        assertEquals(100, batch.size());
+        assertEquals(2, batch.getPlateCount());
+        assertEquals(batch.getPlateId(1), batch.getPlateId(3));
+        assertEquals("GHIJKL", batch.getVehicleRegNumber(0));
+        assertEquals(100, batch.getId(99));
+    }
+
+    @Test
+    public void toTicket_shouldRebuildTheTicket() {
+        TicketBatch batch = new TicketBatch(16);
+        int row = batch.add(7, 4, ParkingType.BIKE, "ABCDEF", 1000, TicketBatch.OPEN, 0, true);
+
+        Ticket ticket = batch.toTicket(row);
+
+        assertEquals(7, ticket.getId());
+        assertEquals(ParkingType.BIKE, ticket.getParkingSpot().getParkingType());
+        assertEquals(1000, ticket.getInTime().getTime());
+        assertNull(ticket.getOutTime());
+        assertTrue(batch.isRecurringUser(row));
+    }
+
+    @Test
+    public void calculateFares_shouldPriceEveryRowOfTheRange() {
+        TicketBatch batch = new TicketBatch(16);
+        batch.add(1, 1, ParkingType.CAR, "ABCDEF", 0, ONE_HOUR, 0, false);
+        batch.add(2, 4, ParkingType.BIKE, "ABCDEF", 0, ONE_HOUR, 0, false);
+        batch.add(3, 1, ParkingType.CAR, "ABCDEF", 0, ONE_HOUR, 0, true);
+        long[] prices = new long[batch.size()];
+
+        new FareCalculatorService().calculateFares(batch, 0, batch.size(), prices);
+
+        // 30 min payantes : 75 centimes (voiture), 50 centimes (moto), 71 centimes (voiture avec remise)
+        assertArrayEquals(new long[]{75, 50, 71}, prices);
+    }
+}
@@ -0,0 +1,112 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketDAOTest {
+
+    private static final long IN_TIME = 1700000000000L;
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    @Mock
+    private DataBaseConfig dataBaseConfig;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement nbTicketStatement;
+    @Mock
+    private PreparedStatement openTicketStatement;
+    @Mock
+    private PreparedStatement closeTicketStatement;
+
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        lenient().when(connection.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(nbTicketStatement);
+        lenient().when(connection.prepareStatement(DBConstants.GET_OPEN_TICKET_WITH_NB_TICKET))
+                .thenReturn(openTicketStatement);
+        when(connection.prepareStatement(DBConstants.CLOSE_TICKET)).thenReturn(closeTicketStatement);
+    }
+
+    private static Ticket openTicket(int id) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(IN_TIME));
+        return ticket;
+    }
+
+    @Test
+    public void closeTicket_withAStaleCachedTicket_shouldCloseTheOpenTicketOfTheDatabase() throws Exception {
+        // le ticket 5 en cache a été fermé par un autre nœud, où la plaque est ensuite rentrée (ticket 9)
+        ticketDAO.openTicketCache.load(Collections.singletonList(openTicket(5)));
+        when(nbTicketStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+        ResultSet openTicket = mock(ResultSet.class);
+        when(openTicket.next()).thenReturn(true);
+        when(openTicket.getInt(1)).thenReturn(3);
+        when(openTicket.getInt(2)).thenReturn(9);
+        when(openTicket.getTimestamp(4)).thenReturn(new Timestamp(IN_TIME + 2 * ONE_HOUR));
+        when(openTicket.getString(6)).thenReturn("CAR");
+        when(openTicket.getInt(7)).thenReturn(2);
+        when(openTicketStatement.executeQuery()).thenReturn(openTicket);
+        when(closeTicketStatement.executeUpdate()).thenReturn(0, 1);
+
+        Date outTime = new Date(IN_TIME + 3 * ONE_HOUR);
+        int[] nbTickets = new int[1];
+        Ticket ticket = ticketDAO.closeTicket("ABCDEF", outTime, (closing, nbTicket) -> {
+            nbTickets[0] = nbTicket;
+            closing.setPrice(1.5);
+        });
+
+        // la sortie réussit du premier coup, dans la même transaction
+        assertNotNull(ticket);
+        assertEquals(9, ticket.getId());
+        assertEquals(3, ticket.getParkingSpot().getId());
+        assertEquals(outTime, ticket.getOutTime());
+        assertEquals(2, nbTickets[0]);
+        verify(closeTicketStatement).setInt(3, 5);
+        verify(closeTicketStatement).setInt(3, 9);
+        verify(connection).commit();
+        verify(dataBaseConfig, never()).rollback(connection);
+        assertNull(ticketDAO.openTicketCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void closeTicket_withoutAnOpenTicket_shouldRollBack() throws Exception {
+        ticketDAO.openTicketCache.load(Collections.singletonList(openTicket(5)));
+        when(nbTicketStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(openTicketStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(closeTicketStatement.executeUpdate()).thenReturn(0);
+
+        assertNull(ticketDAO.closeTicket("ABCDEF", new Date(IN_TIME + ONE_HOUR), (closing, nbTicket) -> { }));
+
+        verify(dataBaseConfig).rollback(connection);
+        verify(connection, never()).commit();
+        assertNull(ticketDAO.openTicketCache.get("ABCDEF"));
+    }
+}
@@ -0,0 +1,142 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.TicketBatch;
+import com.parkit.parkingsystem.service.ColumnarTicketFile;
+import com.parkit.parkingsystem.service.TicketExportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketExportServiceTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+    private static final Date FROM = new Date(0);
+    private static final Date TO = new Date(24 * ONE_HOUR);
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private TicketDAO ticketDAO;
+
+    // Fait défiler les tickets d'id afterId + 1 à 5 par lots de la taille demandée, et échoue après failAfterBatches lots
+    private void streamTickets(int failAfterBatches) throws SQLException {
+        when(ticketDAO.streamClosedTicketBatches(eq(FROM), eq(TO), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            int afterId = invocation.getArgument(2);
+            int batchSize = invocation.getArgument(3);
+            Consumer<TicketBatch> consumer = invocation.getArgument(4);
+            int batches = 0;
+            TicketBatch batch = new TicketBatch(batchSize);
+            for (int id = afterId + 1; id <= 5; id++) {
+                batch.add(id, id, id > 3 ? ParkingType.BIKE : ParkingType.CAR, "PLATE,\"" + id, 0, ONE_HOUR, 150 + id, id == 5);
+                if (batch.size() == batchSize || id == 5) {
+                    if (batches++ == failAfterBatches) {
+                        throw new SQLException("Connection lost");
+                    }
+                    consumer.accept(batch);
+                    batch = new TicketBatch(batchSize);
+                }
+            }
+            return (long) (5 - afterId);
+        });
+    }
+
+    private List<String> readCsv(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void export_shouldWriteGzippedCsv() throws Exception {
+        streamTickets(-1);
+        Path output = dir.resolve("tickets.csv.gz");
+
+        long rows = new TicketExportService(ticketDAO, 2).export(FROM, TO, output, false);
+
+        List<String> lines = readCsv(output);
+        assertEquals(5, rows);
+        assertEquals(6, lines.size());
+        assertEquals("id,parking_number,parking_type,vehicle_reg_number,in_time,out_time,price,recurring_user", lines.get(0));
+        assertEquals("5,5,BIKE,\"PLATE,\"\"5\",1970-01-01T00:00:00Z,1970-01-01T01:00:00Z,1.55,true", lines.get(5));
+    }
+
+    @Test
+    public void export_shouldWriteColumnarFile() throws Exception {
+        streamTickets(-1);
+        Path output = dir.resolve("tickets.ptk");
+
+        new TicketExportService(ticketDAO, 2).export(FROM, TO, output, false);
+
+        List<Long> prices = new ArrayList<>();
+        ColumnarTicketFile.read(output, batch -> {
+            for (int row = 0; row < batch.size(); row++) {
+                prices.add(batch.getPriceInCents(row));
+                assertEquals(batch.getId(row) == 5, batch.isRecurringUser(row));
+            }
+        });
+        assertEquals(5, prices.size());
+        assertEquals(155L, prices.get(4));
+    }
+
+    @Test
+    public void export_shouldResumeAfterTheLastExportedTicket() throws Exception {
+        // la première exportation échoue après un lot de 2 tickets
+        streamTickets(1);
+        Path output = dir.resolve("tickets.csv.gz");
+        TicketExportService exportService = new TicketExportService(ticketDAO, 2);
+        assertThrows(SQLException.class, () -> exportService.export(FROM, TO, output, false));
+        assertEquals(3, readCsv(output).size());
+
+        reset(ticketDAO);
+        streamTickets(-1);
+        long rows = exportService.export(FROM, TO, output, true);
+
+        verify(ticketDAO).streamClosedTicketBatches(eq(FROM), eq(TO), eq(2), eq(2), any());
+        List<String> lines = readCsv(output);
+        assertEquals(3, rows);
+        assertEquals(6, lines.size());
+        assertTrue(lines.get(3).startsWith("3,"));
+    }
+
+    @Test
+    public void export_shouldRefuseToResumeAnotherPeriod() throws Exception {
+        streamTickets(-1);
+        Path output = dir.resolve("tickets.ptk");
+        TicketExportService exportService = new TicketExportService(ticketDAO, 2);
+        exportService.export(FROM, TO, output, false);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> exportService.export(FROM, new Date(48 * ONE_HOUR), output, true));
+    }
+}
@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private TicketDAO ticketDAO;
+
+    private Ticket ticket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(1700000000000L));
+        return ticket;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> savedPlates(int times) {
+        ArgumentCaptor<List<Ticket>> tickets = ArgumentCaptor.forClass(List.class);
+        verify(ticketDAO, atLeast(times)).saveJournaledTickets(tickets.capture(), anyString(), anyLong());
+        List<String> plates = new ArrayList<>();
+        for (List<Ticket> batch : tickets.getAllValues()) {
+            for (Ticket ticket : batch) {
+                plates.add(ticket.getVehicleRegNumber());
+            }
+        }
+        return plates;
+    }
+
+    @Test
+    public void append_fromSeveralGates_shouldSaveEveryTicketOnce() throws Exception {
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(true);
+        TicketJournal journal = new TicketJournal(directory.resolve("tickets.journal"), ticketDAO);
+
+        ExecutorService gates = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> appends = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String plate = "PLATE" + i;
+            appends.add(gates.submit(() -> journal.append(ticket(plate))));
+        }
+        for (Future<Boolean> append : appends) {
+            assertTrue(append.get());
+        }
+        gates.shutdown();
+
+        // flush() rend la main quand tout est en base
+        assertTrue(journal.flush(5000));
+        journal.close();
+        List<String> plates = savedPlates(1);
+        assertEquals(50, plates.size());
+        assertEquals(50, plates.stream().distinct().count());
+    }
+
+    @Test
+    public void reopen_shouldReplayTheTicketsNotSavedYet() throws Exception {
+        // Première exécution : la base refuse les insertions, les tickets restent dans le journal
+        Path file = directory.resolve("tickets.journal");
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(false);
+        TicketJournal journal = new TicketJournal(file, ticketDAO);
+        assertTrue(journal.append(ticket("ABCDEF")));
+        assertTrue(journal.append(ticket("GHIJKL")));
+        journal.close();
+
+        // Redémarrage : les deux tickets sont rejoués
+        reset(ticketDAO);
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(true);
+        journal = new TicketJournal(file, ticketDAO);
+        assertTrue(journal.flush(5000));
+        journal.close();
+
+        assertEquals(2, savedPlates(1).size());
+        verify(ticketDAO, atLeastOnce()).saveJournaledTickets(anyList(), anyString(), eq(2L));
+    }
+
+    @Test
+    public void reopen_shouldSkipTheTicketsAlreadySaved() throws Exception {
+        Path file = directory.resolve("tickets.journal");
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(false);
+        TicketJournal journal = new TicketJournal(file, ticketDAO);
+        assertTrue(journal.append(ticket("ABCDEF")));
+        assertTrue(journal.append(ticket("GHIJKL")));
+        journal.close();
+
+        // La base a déjà le premier ticket (séquence 1) : seul le second doit être rejoué
+        reset(ticketDAO);
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(1L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(true);
+        journal = new TicketJournal(file, ticketDAO);
+        assertTrue(journal.flush(5000));
+        journal.close();
+
+        List<String> plates = savedPlates(1);
+        assertFalse(plates.contains("ABCDEF"));
+        assertTrue(plates.contains("GHIJKL"));
+    }
+
+    @Test
+    public void reopen_shouldDiscardAnEntryTornByACrash() throws Exception {
+        Path file = directory.resolve("tickets.journal");
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(false);
+        TicketJournal journal = new TicketJournal(file, ticketDAO);
+        assertTrue(journal.append(ticket("ABCDEF")));
+        journal.close();
+        // Écriture interrompue : une longueur d'entrée sans le contenu
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        reset(ticketDAO);
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenReturn(true);
+        journal = new TicketJournal(file, ticketDAO);
+        assertTrue(journal.append(ticket("GHIJKL")));
+        assertTrue(journal.flush(5000));
+        journal.close();
+
+        List<String> plates = savedPlates(1);
+        assertTrue(plates.contains("ABCDEF"));
+        assertTrue(plates.contains("GHIJKL"));
+        assertEquals(2, plates.size());
+    }
+
+    @Test
+    public void drain_shouldMoveARejectedTicketAside_andSaveTheOthers() throws Exception {
+        // La base refuse toujours le ticket de REJECTED (par exemple une contrainte violée)
+        Path file = directory.resolve("tickets.journal");
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        when(ticketDAO.saveJournaledTickets(anyList(), anyString(), anyLong())).thenAnswer(invocation -> {
+            List<Ticket> tickets = invocation.getArgument(0);
+            return tickets.stream().noneMatch(ticket -> "REJECTED".equals(ticket.getVehicleRegNumber()));
+        });
+        when(ticketDAO.saveJournaledTicket(any(Ticket.class), anyString(), anyLong())).thenAnswer(invocation -> {
+            Ticket ticket = invocation.getArgument(0);
+            return "REJECTED".equals(ticket.getVehicleRegNumber())
+                    ? TicketDAO.JOURNALED_TICKET_REJECTED : TicketDAO.JOURNALED_TICKET_SAVED;
+        });
+        when(ticketDAO.skipJournaledTicket(any(Ticket.class), anyString(), anyLong())).thenReturn(true);
+        TicketJournal journal = new TicketJournal(file, ticketDAO);
+
+        assertTrue(journal.append(ticket("ABCDEF")));
+        assertTrue(journal.append(ticket("REJECTED")));
+        assertTrue(journal.append(ticket("GHIJKL")));
+
+        // le ticket refusé ne bloque pas les suivants et le point de reprise passe au-delà
+        assertTrue(journal.flush(5000));
+        journal.close();
+        verify(ticketDAO).skipJournaledTicket(argThat(ticket -> "REJECTED".equals(ticket.getVehicleRegNumber())),
+                anyString(), eq(2L));
+        List<String> rejected = Files.readAllLines(directory.resolve("tickets.journal.rejected"));
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0).startsWith("2\t1\tCAR\tREJECTED\t"));
+    }
+
+    @Test
+    public void append_shouldRefuseATicketTheDatabaseCannotStore() throws Exception {
+        when(ticketDAO.getJournalSequence(anyString())).thenReturn(0L);
+        TicketJournal journal = new TicketJournal(directory.resolve("tickets.journal"), ticketDAO);
+
+        // plaque plus longue que la colonne VEHICLE_REG_NUMBER
+        assertFalse(journal.append(ticket("AB-123-CD-456")));
+        assertFalse(journal.append(ticket(" ")));
+        assertTrue(journal.flush(1000));
+        journal.close();
+
+        verify(ticketDAO, never()).saveJournaledTickets(anyList(), anyString(), anyLong());
+    }
+}
@@ -0,0 +1,118 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.TicketBatch;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ReRatingReport;
+import com.parkit.parkingsystem.service.TicketReRatingService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TicketReRatingServiceTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    @Mock
+    private TicketDAO ticketDAO;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+    // Fait défiler 5 tickets voiture d'une heure par lots de la taille demandée : 3 au bon prix et 2 à corriger
+    private void streamFiveTickets() throws SQLException {
+        when(ticketDAO.streamClosedTicketBatches(anyInt(), any())).thenAnswer(invocation -> {
+            int batchSize = invocation.getArgument(0);
+            Consumer<TicketBatch> consumer = invocation.getArgument(1);
+            long carPrice = fareCalculatorService.calculateFareInCents(0, ONE_HOUR, ParkingType.CAR.ordinal(), false);
+            TicketBatch batch = new TicketBatch(batchSize);
+            for (int id = 1; id <= 5; id++) {
+                long price = id % 2 == 0 ? 0 : carPrice;
+                batch.add(id, 1, ParkingType.CAR, "PLATE" + id, 0, ONE_HOUR, price, false);
+                if (batch.size() == batchSize || id == 5) {
+                    consumer.accept(batch);
+                    batch = new TicketBatch(batchSize);
+                }
+            }
+            return 5L;
+        });
+    }
+
+    @Test
+    public void reRateClosedTickets_shouldOnlyWriteChangedPrices_chunkByChunk() throws SQLException {
+        streamFiveTickets();
+        List<Integer> updatedIds = new ArrayList<>();
+        when(ticketDAO.updateTicketPrices(any(int[].class), any(long[].class), anyInt())).thenAnswer(invocation -> {
+            int[] ids = invocation.getArgument(0);
+            int count = invocation.getArgument(2);
+            for (int i = 0; i < count; i++) {
+                updatedIds.add(ids[i]);
+            }
+            return true;
+        });
+
+        ReRatingReport report = new TicketReRatingService(ticketDAO, fareCalculatorService, 2).reRateClosedTickets();
+
+        assertEquals(5, report.getRowsRead());
+        assertEquals(2, report.getRowsUpdated());
+        assertEquals(0, report.getFailedChunks());
+        assertTrue(updatedIds.contains(2) && updatedIds.contains(4));
+        // Le dernier chunk (ticket 5) n'a pas de prix modifié : aucun batch pour lui
+        verify(ticketDAO, times(2)).updateTicketPrices(any(int[].class), any(long[].class), eq(1));
+    }
+
+    @Test
+    public void reRateClosedTickets_shouldCountFailedChunks() throws SQLException {
+        streamFiveTickets();
+        when(ticketDAO.updateTicketPrices(any(int[].class), any(long[].class), anyInt())).thenReturn(false);
+
+        ReRatingReport report = new TicketReRatingService(ticketDAO, fareCalculatorService, 2).reRateClosedTickets();
+
+        assertEquals(0, report.getRowsUpdated());
+        assertEquals(2, report.getFailedChunks());
+    }
+
+    @Test
+    public void reRateClosedTickets_shouldSkipTicketsThatCannotBePriced() throws SQLException {
+        when(ticketDAO.streamClosedTicketBatches(anyInt(), any())).thenAnswer(invocation -> {
+            Consumer<TicketBatch> consumer = invocation.getArgument(1);
+            TicketBatch batch = new TicketBatch(3);
+            batch.add(1, 1, ParkingType.CAR, "PLATE1", 0, ONE_HOUR, 0, false);
+            // heure de sortie avant l'heure d'entrée
+            batch.add(2, 1, ParkingType.CAR, "PLATE2", ONE_HOUR, 0, 0, false);
+            batch.add(3, 1, ParkingType.CAR, "PLATE3", 0, ONE_HOUR, 0, false);
+            consumer.accept(batch);
+            return 3L;
+        });
+        List<Integer> updatedIds = new ArrayList<>();
+        when(ticketDAO.updateTicketPrices(any(int[].class), any(long[].class), anyInt())).thenAnswer(invocation -> {
+            int[] ids = invocation.getArgument(0);
+            int count = invocation.getArgument(2);
+            for (int i = 0; i < count; i++) {
+                updatedIds.add(ids[i]);
+            }
+            return true;
+        });
+
+        ReRatingReport report = new TicketReRatingService(ticketDAO, fareCalculatorService, 3).reRateClosedTickets();
+
+        assertEquals(3, report.getRowsRead());
+        assertEquals(1, report.getSkippedRows());
+        assertEquals(2, report.getRowsUpdated());
+        assertEquals(0, report.getFailedChunks());
+        assertEquals(Arrays.asList(1, 3), updatedIds);
+    }
+}
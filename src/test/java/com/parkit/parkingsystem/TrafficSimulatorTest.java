@@ -0,0 +1,150 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingStorage;
+import com.parkit.parkingsystem.model.TicketBatch;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.simulation.GateEvent;
+import com.parkit.parkingsystem.simulation.SimulationReport;
+import com.parkit.parkingsystem.simulation.SyntheticTraffic;
+import com.parkit.parkingsystem.simulation.TicketTrace;
+import com.parkit.parkingsystem.simulation.TrafficSimulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrafficSimulatorTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long ONE_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path directory;
+
+    private ParkingStorage storage;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        storage = ParkingStorage.openMappedFiles(directory, false);
+        parkingService = new ParkingService(storage.getParkingSpotRepository(), storage.getTicketRepository());
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        storage.close();
+    }
+
+    private static List<GateEvent> syntheticTraffic(long seed) {
+        SyntheticTraffic traffic = new SyntheticTraffic(seed);
+        traffic.setStartMillis(START);
+        traffic.setDurationMillis(4 * ONE_HOUR);
+        traffic.setArrivalsPerHour(20);
+        traffic.setDwellTime(SyntheticTraffic.DwellTimeDistribution.EXPONENTIAL, ONE_HOUR, 0);
+        return traffic.generate();
+    }
+
+    @Test
+    public void generate_shouldOnlyBringBackPlatesThatLeft() {
+        List<GateEvent> events = syntheticTraffic(7);
+
+        assertEquals(events.toString(), syntheticTraffic(7).toString());
+        Set<String> parked = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        long returningVehicles = 0;
+        for (GateEvent event : events) {
+            if (event.isEntry()) {
+                assertTrue(parked.add(event.getVehicleRegNumber()), event.toString());
+                if (!seen.add(event.getVehicleRegNumber())) {
+                    returningVehicles++;
+                }
+            } else {
+                assertTrue(parked.remove(event.getVehicleRegNumber()), event.toString());
+            }
+        }
+        assertTrue(parked.isEmpty());
+        assertTrue(returningVehicles > 0);
+    }
+
+    @Test
+    public void run_shouldPlayTheTrafficThroughConcurrentLanes() throws Exception {
+        List<GateEvent> events = syntheticTraffic(11);
+
+        SimulationReport report = new TrafficSimulator(parkingService, 4, 0).run(events);
+
+        // 5 places seulement : des entrées sont refusées, mais aucune place n'est donnée deux fois
+        assertEquals(events.size(), report.getEvents());
+        assertEquals(0, report.getAllocationConflicts());
+        assertEquals(0, report.getEntries().getFailures());
+        assertEquals(0, report.getExits().getFailures());
+        assertEquals(0, report.getTicketsNotClosed());
+        assertTrue(report.getParkingFull() > 0);
+        // chaque entrée réussie a sa sortie, chaque entrée refusée fait ignorer la sortie correspondante
+        assertEquals(events.size(), report.getEntries().getCount() * 2);
+        assertEquals(report.getEntries().getCount(), report.getExits().getCount() + report.getParkingFull());
+        assertEquals(report.getParkingFull(), report.getSkippedEvents());
+        assertTrue(report.getFareTotalInCents() > 0);
+        assertEquals(3, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.CAR));
+        assertEquals(2, storage.getParkingSpotRepository().getAvailableSpotCount(ParkingType.BIKE));
+    }
+
+    @Test
+    public void run_withoutTimeCompression_shouldStampTicketsWithTheEventTimes() throws Exception {
+        Clock clock = parkingService.getClock();
+        List<GateEvent> events = Arrays.asList(
+                GateEvent.entry(START, "ABCDEF", ParkingType.CAR),
+                GateEvent.exit(START + ONE_HOUR, "ABCDEF", ParkingType.CAR),
+                GateEvent.exit(START + ONE_HOUR, "GHIJKL", ParkingType.CAR));
+
+        SimulationReport report = new TrafficSimulator(parkingService, 2, 0).run(events);
+
+        // 1h de voiture dont 30 min gratuites
+        assertEquals(75, report.getFareTotalInCents());
+        assertEquals(1, report.getSkippedEvents());
+        assertEquals(0, report.getMaxLagMillis());
+        assertSame(clock, parkingService.getClock());
+    }
+
+    @Test
+    public void run_withTimeCompression_shouldFollowTheSimulatedClock() throws Exception {
+        List<GateEvent> events = Arrays.asList(
+                GateEvent.entry(START, "ABCDEF", ParkingType.CAR),
+                GateEvent.exit(START + ONE_HOUR, "ABCDEF", ParkingType.CAR));
+
+        // une heure simulée en une seconde
+        SimulationReport report = new TrafficSimulator(parkingService, 1, ONE_HOUR / 1000.0).run(events);
+
+        assertTrue(report.getElapsedMillis() >= 950, String.valueOf(report.getElapsedMillis()));
+        assertEquals(75, report.getFareTotalInCents(), 5);
+    }
+
+    @Test
+    public void toEvents_shouldReplaceTheRealPlates() {
+        TicketBatch batch = new TicketBatch(3);
+        batch.add(1, 1, ParkingType.CAR, "ABCDEF", START, START + ONE_HOUR, 75, false);
+        batch.add(2, 4, ParkingType.BIKE, "GHIJKL", START, START + 2 * ONE_HOUR, 150, false);
+        batch.add(3, 1, ParkingType.CAR, "ABCDEF", START + 3 * ONE_HOUR, START + 4 * ONE_HOUR, 71, true);
+
+        List<GateEvent> events = TicketTrace.toEvents(batch);
+
+        // chaque plaque réelle devient toujours la même plaque simulée
+        assertEquals(6, events.size());
+        Set<String> plates = new HashSet<>();
+        for (GateEvent event : events) {
+            plates.add(event.getVehicleRegNumber());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("SIM000001", "SIM000002")), plates);
+        assertEquals("SIM000001", events.get(events.size() - 1).getVehicleRegNumber());
+    }
+}
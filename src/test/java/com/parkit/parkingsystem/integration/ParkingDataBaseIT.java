@@ -1,5 +1,6 @@
 package com.parkit.parkingsystem.integration;
 
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
@@ -8,6 +9,7 @@ import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
 import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.TicketArchiveService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -17,6 +19,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -53,6 +59,8 @@ public class ParkingDataBaseIT {
         when(inputReaderUtil.readSelection()).thenReturn(1);
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         dataBasePrepareService.clearDataBaseEntries();
+        parkingSpotDAO.loadAvailabilityIndex();
+        ticketDAO.loadOpenTickets();
     }
 
     @AfterAll
@@ -141,4 +149,49 @@ public class ParkingDataBaseIT {
         // on vérifie que la méthode de calcul du prix du ticket a bien été appelée avec le paramètre de discount à true
         verify(fareCalculatorService).calculateFare(any(Ticket.class), eq(true));
     }
+
+    @Test
+    public void testAsyncLookupsOfAParkedCar() throws Exception {
+
+        // On gare une voiture puis on lance en parallèle la lecture du ticket et du nombre de visites
+        testParkingACar();
+
+        CompletableFuture<Ticket> ticket = ticketDAO.getTicketAsync("ABCDEF");
+        CompletableFuture<Integer> nbTicket = ticketDAO.getNbTicketAsync("ABCDEF");
+        CompletableFuture<Integer> availableCars = parkingSpotDAO.getAvailableSpotCountAsync(ParkingType.CAR);
+
+        assertNull(ticket.get(5, TimeUnit.SECONDS).getOutTime());
+        assertEquals(1, nbTicket.get(5, TimeUnit.SECONDS));
+        assertEquals(2, availableCars.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReconcileAvailabilityAfterAnOutsideChange() {
+
+        // Une autre instance occupe toutes les places moto directement dans la base
+        dataBasePrepareService.setAvailability(ParkingType.BIKE, false);
+        assertEquals(2, parkingSpotDAO.getAvailableSpotCount(ParkingType.BIKE));
+
+        assertTrue(parkingSpotDAO.reconcileAvailability());
+
+        assertEquals(0, parkingSpotDAO.getAvailableSpotCount(ParkingType.BIKE));
+        assertEquals(3, parkingSpotDAO.getAvailableSpotCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void testArchivingAClosedTicket() throws Exception {
+
+        // On gare puis on sort une voiture, et on archive tous les tickets fermés
+        testExitingACar();
+        Thread.sleep(1000);
+        Date closedBefore = new Date();
+
+        long archived = new TicketArchiveService(ticketDAO, 100, 0).archiveTicketsClosedBefore(closedBefore);
+
+        // Le ticket a quitté la table ticket mais compte toujours comme une visite et reste dans les rapports
+        assertEquals(1, archived);
+        assertNull(ticketDAO.getTicket("ABCDEF"));
+        assertEquals(1, ticketDAO.getNbTicket("ABCDEF"));
+        assertEquals(1, ticketDAO.loadClosedTickets(new Date(0), closedBefore).size());
+    }
 }
@@ -1,8 +1,10 @@
 package com.parkit.parkingsystem.integration.service;
 
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 
 public class DataBasePrepareService {
 
@@ -18,6 +20,8 @@ public class DataBasePrepareService {
 
             //clear ticket entries;
             connection.prepareStatement("truncate table ticket").execute();
+            connection.prepareStatement("truncate table vehicle_visit").execute();
+            connection.prepareStatement("truncate table ticket_archive").execute();
 
         }catch(Exception e){
             e.printStackTrace();
@@ -26,5 +30,19 @@ public class DataBasePrepareService {
         }
     }
 
-
+    // Changes the parking table behind the back of the DAOs, like another instance would
+    public void setAvailability(ParkingType parkingType, boolean available){
+        Connection connection = null;
+        try{
+            connection = dataBaseTestConfig.getConnection();
+            PreparedStatement ps = connection.prepareStatement("update parking set available = ? where TYPE = ?");
+            ps.setBoolean(1, available);
+            ps.setString(2, parkingType.toString());
+            ps.execute();
+        }catch(Exception e){
+            e.printStackTrace();
+        }finally {
+            dataBaseTestConfig.closeConnection(connection);
+        }
+    }
 }